@@ -16,16 +16,19 @@
  */
 package com.redhat.cloud.policies.app.auth;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Base64;
 import java.util.Optional;
 import jakarta.ws.rs.core.HttpHeaders;
 
 public abstract class HeaderHelper {
 
-    private static ObjectMapper objectMapper = new ObjectMapper();
+    private static final JsonFactory jsonFactory = new JsonFactory();
 
     public static Optional<XRhIdentity> getRhIdFromHeader(HttpHeaders httpHeaders) {
         if (httpHeaders == null) {
@@ -38,14 +41,121 @@ public abstract class HeaderHelper {
         return getRhIdFromString(headerString);
     }
 
+    /*
+     * The header is decoded while it is parsed, without going through an intermediate byte[] or String.
+     * Only the fields we use are read, everything else (e.g. the entitlements) is skipped.
+     */
     public static Optional<XRhIdentity> getRhIdFromString(String xRhIdHeader) {
-        XRhIdentity rhIdentity;
-        try {
-            String json_string = new String(Base64.getDecoder().decode(xRhIdHeader));
-            rhIdentity = objectMapper.readValue(json_string, XRhIdentity.class);
-        } catch (JsonProcessingException jpe) {
+        InputStream json = Base64.getDecoder().wrap(new HeaderInputStream(xRhIdHeader));
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return Optional.empty();
+            }
+            XRhIdentity rhIdentity = new XRhIdentity();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.START_OBJECT && field.equals("identity")) {
+                    rhIdentity.identity = readIdentity(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return Optional.of(rhIdentity);
+        } catch (IOException | IllegalArgumentException e) {
+            // Bad Base64 or bad JSON
             return Optional.empty();
         }
-        return Optional.ofNullable(rhIdentity);
+    }
+
+    private static XRhIdentity.Identity readIdentity(JsonParser parser) throws IOException {
+        XRhIdentity.Identity identity = new XRhIdentity.Identity();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "account_number":
+                    identity.accountNumber = readString(parser);
+                    break;
+                case "org_id":
+                    identity.orgId = readString(parser);
+                    break;
+                case "type":
+                    identity.type = readString(parser);
+                    break;
+                case "user":
+                    identity.user = readUser(parser);
+                    break;
+                case "service_account":
+                    identity.serviceAccount = readServiceAccount(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return identity;
+    }
+
+    private static XRhIdentity.User readUser(JsonParser parser) throws IOException {
+        String username = readUsername(parser);
+        if (username == null) {
+            return null;
+        }
+        XRhIdentity.User user = new XRhIdentity.User();
+        user.username = username;
+        return user;
+    }
+
+    private static XRhIdentity.ServiceAccount readServiceAccount(JsonParser parser) throws IOException {
+        String username = readUsername(parser);
+        if (username == null) {
+            return null;
+        }
+        XRhIdentity.ServiceAccount serviceAccount = new XRhIdentity.ServiceAccount();
+        serviceAccount.username = username;
+        return serviceAccount;
+    }
+
+    private static String readUsername(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        String username = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (field.equals("username")) {
+                username = readString(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return username;
+    }
+
+    private static String readString(JsonParser parser) throws IOException {
+        if (parser.currentToken().isStructStart()) {
+            parser.skipChildren();
+            return null;
+        }
+        return parser.getValueAsString();
+    }
+
+    /*
+     * Base64 only uses ASCII characters, so the chars of the header are its bytes.
+     */
+    private static class HeaderInputStream extends InputStream {
+
+        private final String header;
+        private int position;
+
+        HeaderInputStream(String header) {
+            this.header = header;
+        }
+
+        @Override
+        public int read() {
+            return position < header.length() ? header.charAt(position++) & 0xFF : -1;
+        }
     }
 }
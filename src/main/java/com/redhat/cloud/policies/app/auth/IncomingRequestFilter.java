@@ -16,6 +16,9 @@
  */
 package com.redhat.cloud.policies.app.auth;
 
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.quarkus.cache.CaffeineCache;
 import io.quarkus.logging.Log;
 import io.quarkus.security.identity.SecurityIdentity;
 import io.quarkus.security.runtime.QuarkusSecurityIdentity;
@@ -32,7 +35,12 @@ import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.SecurityContext;
 import jakarta.ws.rs.ext.Provider;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Request filter. This runs on all incoming requests before method matching
@@ -64,9 +72,14 @@ public class IncomingRequestFilter implements ContainerRequestFilter {
     public static final String X_RH_ORG_ID = "x-rh-rbac-org-id";
     public static final String X_RH_USER = "x-rh-user";
 
+    public static final String CACHE_NAME = "rhid-cache";
+
     @Inject
     RhIdPrincipalProducer producer;
 
+    @CacheName(CACHE_NAME)
+    Cache rhIdCache;
+
     CurrentVertxRequest currentVertxRequest;
 
     @Override
@@ -86,7 +99,7 @@ public class IncomingRequestFilter implements ContainerRequestFilter {
 
         // Get the x-rh-identity header and parse it.
         String xrhid_header = requestContext.getHeaderString("x-rh-identity");
-        XRhIdentity rhIdentity = determineXRhIdentity(xrhid_header);
+        RhIdentity rhIdentity = determineRhIdentity(xrhid_header);
         if (rhIdentity == null) {
             // Header was somehow bad
             requestContext.abortWith(Response.status(Response.Status.UNAUTHORIZED).build());
@@ -94,7 +107,7 @@ public class IncomingRequestFilter implements ContainerRequestFilter {
         }
 
         // header was good, so now create the security context
-        RhIdPrincipal rhPrincipal = new RhIdPrincipal(rhIdentity.getUsername(), rhIdentity.identity.accountNumber, rhIdentity.identity.orgId);
+        RhIdPrincipal rhPrincipal = new RhIdPrincipal(rhIdentity.getUsername(), rhIdentity.getAccountNumber(), rhIdentity.getOrgId());
         rhPrincipal.setRawRhIdHeader(xrhid_header);
 
         // Attach account id, org id and user to the context so we could log it later
@@ -118,12 +131,20 @@ public class IncomingRequestFilter implements ContainerRequestFilter {
         producer.setPrincipal(rhPrincipal);
     }
 
-    private XRhIdentity determineXRhIdentity(String xrhid_header) {
+    private RhIdentity determineRhIdentity(String xrhid_header) {
         if (xrhid_header == null || xrhid_header.isEmpty()) {
             logIfNeeded("No x-rh-identity header passed");
             return null;
         }
 
+        // The UI sends the same header with every call of a session, so it only needs to be parsed once
+        ByteBuffer key = hash(xrhid_header);
+        CaffeineCache cache = rhIdCache.as(CaffeineCache.class);
+        CompletableFuture<RhIdentity> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached.join();
+        }
+
         // Now that we are sure that there is a header, we can use it.
         Optional<XRhIdentity> xrhid = HeaderHelper.getRhIdFromString(xrhid_header);
         if (xrhid.isEmpty()) {
@@ -134,16 +155,34 @@ public class IncomingRequestFilter implements ContainerRequestFilter {
         }
 
         // Basic sanity check
-        XRhIdentity rhIdentity = xrhid.get();
-        if (rhIdentity.getUsername() == null || rhIdentity.getUsername().isEmpty() ||
-                rhIdentity.identity.orgId == null || rhIdentity.identity.orgId.isBlank()
+        XRhIdentity xRhIdentity = xrhid.get();
+        if (xRhIdentity.getUsername() == null || xRhIdentity.getUsername().isEmpty() ||
+                xRhIdentity.identity.orgId == null || xRhIdentity.identity.orgId.isBlank()
         ) {
             logIfNeeded("X-rh-identity header has no user or org ID");
             return null;
         }
+
+        // Only good headers are cached, bad ones are parsed again and rejected each time
+        RhIdentity rhIdentity = RhIdentity.from(xRhIdentity);
+        cache.put(key, CompletableFuture.completedFuture(rhIdentity));
         return rhIdentity;
     }
 
+    /*
+     * The cache is keyed on a SHA-256 of the header and not on the header itself,
+     * which can be several KB for service accounts.
+     */
+    private static ByteBuffer hash(String xrhid_header) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return ByteBuffer.wrap(digest.digest(xrhid_header.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
     private void logIfNeeded(String logMessage) {
         Log.debug(logMessage);
     }
@@ -0,0 +1,251 @@
+package com.redhat.cloud.policies.app.auth;
+
+import com.redhat.cloud.policies.app.auth.models.RbacRaw;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.quarkus.cache.CaffeineCache;
+import io.quarkus.cache.CompositeCacheKey;
+import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.context.ManagedExecutor;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.redhat.cloud.policies.app.auth.RbacFilter.APPLICATION;
+import static com.redhat.cloud.policies.app.auth.RbacFilter.RESOURCE;
+
+@ApplicationScoped
+public class RbacCache {
+
+    public static final String CACHE_NAME = "rbac-cache";
+
+    @Inject
+    RbacClient rbacClient;
+
+    @CacheName(CACHE_NAME)
+    Cache cache;
+
+    @Inject
+    ManagedExecutor executor;
+
+    @Inject
+    MeterRegistry registry;
+
+    // Soft TTL. The hard TTL is quarkus.cache.caffeine.rbac-cache.expire-after-write
+    @ConfigProperty(name = "rbac.cache.refresh-after", defaultValue = "PT60S")
+    Duration refreshAfter;
+
+    /*
+     * RBAC calls in flight, per user. When an entry expires, the parallel requests of the UI all miss at
+     * once. Only the first one calls RBAC, the others wait for its outcome. Background refreshes are
+     * registered here too, so that a miss during a refresh waits for the refresh.
+     */
+    private final ConcurrentMap<CompositeCacheKey, CompletableFuture<RbacPermissions>> inFlight = new ConcurrentHashMap<>();
+
+    private Counter refreshSuccesses;
+    private Counter refreshFailures;
+    private Counter coalescedWaiters;
+
+    @PostConstruct
+    void init() {
+        refreshSuccesses = Counter.builder("rbac_cache_refresh").tag("result", "success").register(registry);
+        refreshFailures = Counter.builder("rbac_cache_refresh").tag("result", "failure").register(registry);
+        // Misses which waited for the RBAC call of another request instead of making their own
+        coalescedWaiters = Counter.builder("rbac_cache_coalesced_waiters").register(registry);
+    }
+
+    /*
+     * The cache is keyed on the org and the user, and not on the x-rh-identity header. The header also
+     * carries fields like the entitlements, which change without any effect on the RBAC permissions.
+     * Only the parsed permissions are kept, not the full RbacRaw.
+     *
+     * Entries older than rbac.cache.refresh-after are still returned, but get refreshed in the background,
+     * so that active users don't wait for RBAC every time an entry expires. Only once the entry is older than
+     * quarkus.cache.caffeine.rbac-cache.expire-after-write, the caller waits for RBAC.
+     *
+     * Concurrent misses for the same user share one RBAC call, see #inFlight.
+     *
+     * Exceptions of the remote call or of the host group parsing bubble out of the method,
+     * so that nothing is cached and the next call retries.
+     */
+    RbacPermissions getPermissions(String orgId, String username, String xrhidHeader) {
+        CompositeCacheKey key = new CompositeCacheKey(orgId, username);
+        RbacPermissions permissions = getCachedPermissions(key, xrhidHeader);
+        if (permissions != null) {
+            return permissions;
+        }
+
+        CompletableFuture<RbacPermissions> call = new CompletableFuture<>();
+        CompletableFuture<RbacPermissions> pending = joinCall(key, call);
+        if (pending != null) {
+            try {
+                return pending.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        try {
+            permissions = load(xrhidHeader);
+        } catch (Throwable e) {
+            // Also on Errors, or the waiters would wait forever
+            fail(key, call, e);
+            throw e;
+        }
+        complete(key, call, permissions);
+        return permissions;
+    }
+
+    /*
+     * Non-blocking variant of the above.
+     */
+    Uni<RbacPermissions> getPermissionsAsync(String orgId, String username, String xrhidHeader) {
+        CompositeCacheKey key = new CompositeCacheKey(orgId, username);
+        RbacPermissions permissions = getCachedPermissions(key, xrhidHeader);
+        if (permissions != null) {
+            return Uni.createFrom().item(permissions);
+        }
+
+        CompletableFuture<RbacPermissions> call = new CompletableFuture<>();
+        CompletableFuture<RbacPermissions> pending = joinCall(key, call);
+        if (pending != null) {
+            return Uni.createFrom().completionStage(pending);
+        }
+
+        // Subscribed right away, as other callers may wait for this call even if ours goes away
+        rbacClient.getRbacInfoAsync(xrhidHeader)
+                .map(this::toPermissions)
+                .subscribe().with(result -> complete(key, call, result), failure -> fail(key, call, failure));
+        return Uni.createFrom().completionStage(call);
+    }
+
+    /*
+     * Returns the cached permissions of the user, or null if they need to be loaded from RBAC first.
+     */
+    RbacPermissions getCachedPermissions(String orgId, String username, String xrhidHeader) {
+        return getCachedPermissions(new CompositeCacheKey(orgId, username), xrhidHeader);
+    }
+
+    private RbacPermissions getCachedPermissions(CompositeCacheKey key, String xrhidHeader) {
+        CompletableFuture<RbacPermissions> cached = cache.as(CaffeineCache.class).getIfPresent(key);
+        if (cached == null || !cached.isDone() || cached.isCompletedExceptionally()) {
+            return null;
+        }
+        RbacPermissions permissions = cached.join();
+        if (permissions.isOlderThan(refreshAfter)) {
+            refreshInBackground(key, xrhidHeader, permissions);
+        }
+        return permissions;
+    }
+
+    /*
+     * Registers the call as the one in flight for the user. If another call is already in flight,
+     * nothing is registered and that other call is returned, so that the caller waits for it.
+     */
+    private CompletableFuture<RbacPermissions> joinCall(CompositeCacheKey key, CompletableFuture<RbacPermissions> call) {
+        CompletableFuture<RbacPermissions> pending = inFlight.putIfAbsent(key, call);
+        if (pending != null) {
+            coalescedWaiters.increment();
+        }
+        return pending;
+    }
+
+    private void complete(CompositeCacheKey key, CompletableFuture<RbacPermissions> call, RbacPermissions permissions) {
+        // Not cached if the user was invalidated while the call was in flight
+        if (inFlight.get(key) == call) {
+            cache.as(CaffeineCache.class).put(key, CompletableFuture.completedFuture(permissions));
+        }
+        inFlight.remove(key, call);
+        call.complete(permissions);
+    }
+
+    private void fail(CompositeCacheKey key, CompletableFuture<RbacPermissions> call, Throwable failure) {
+        inFlight.remove(key, call);
+        call.completeExceptionally(failure);
+    }
+
+    private void refreshInBackground(CompositeCacheKey key, String xrhidHeader, RbacPermissions stale) {
+        CompletableFuture<RbacPermissions> call = new CompletableFuture<>();
+        // A refresh or a miss of the same user is already calling RBAC
+        if (inFlight.putIfAbsent(key, call) != null) {
+            return;
+        }
+        try {
+            executor.runAsync(() -> refresh(key, call, xrhidHeader, stale));
+        } catch (RuntimeException e) {
+            Log.warnf("Background refresh of RBAC permissions could not be started for %s: %s", key, e);
+            keepStale(key, call, stale);
+        }
+    }
+
+    private void refresh(CompositeCacheKey key, CompletableFuture<RbacPermissions> call, String xrhidHeader, RbacPermissions stale) {
+        RbacPermissions permissions;
+        try {
+            permissions = load(xrhidHeader);
+        } catch (Throwable e) {
+            // Also on Errors, or the user would never be refreshed again and the waiters would wait forever
+            Log.warnf("Background refresh of RBAC permissions failed for %s: %s", key, e);
+            refreshFailures.increment();
+            keepStale(key, call, stale);
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+            return;
+        }
+        complete(key, call, permissions);
+        refreshSuccesses.increment();
+    }
+
+    /*
+     * The stale entry is kept until the hard TTL, the next request tries again. Misses which joined the failed
+     * refresh get the stale permissions too, like the requests before them, instead of the failure.
+     */
+    private void keepStale(CompositeCacheKey key, CompletableFuture<RbacPermissions> call, RbacPermissions stale) {
+        inFlight.remove(key, call);
+        call.complete(stale);
+    }
+
+    private RbacPermissions load(String xrhidHeader) {
+        return toPermissions(rbacClient.getRbacInfo(xrhidHeader));
+    }
+
+    private RbacPermissions toPermissions(RbacRaw result) {
+        return new RbacPermissions(
+                result.canRead(APPLICATION, RESOURCE),
+                result.canWrite(APPLICATION, RESOURCE),
+                RbacFilter.hostGroupsToUUIDs(result.hostGroupIds())
+        );
+    }
+
+    /**
+     * Drop the cached permissions of all users of an org, e.g. after their roles were changed in RBAC.
+     *
+     * @return number of users whose permissions were dropped
+     */
+    public int invalidateOrg(String orgId) {
+        int count = 0;
+        for (Object key : cache.as(CaffeineCache.class).keySet()) {
+            if (key instanceof CompositeCacheKey && orgId.equals(((CompositeCacheKey) key).getKeyElements()[0])) {
+                cache.invalidate(key).await().indefinitely();
+                count++;
+            }
+        }
+        inFlight.keySet().removeIf(key -> orgId.equals(key.getKeyElements()[0]));
+        return count;
+    }
+
+    public void invalidateAll() {
+        inFlight.clear();
+        cache.invalidateAll().await().indefinitely();
+    }
+}
@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.time.Duration;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import jakarta.enterprise.inject.Instance;
 import jakarta.inject.Inject;
@@ -32,8 +33,9 @@ import jakarta.ws.rs.ext.Provider;
 import io.quarkus.logging.Log;
 import jakarta.annotation.Priority;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
-
-import com.redhat.cloud.policies.app.auth.models.RbacRaw;
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.eclipse.microprofile.context.ThreadContext;
+import org.jboss.resteasy.core.interception.jaxrs.SuspendableContainerRequestContext;
 
 @Provider
 @Priority(Priorities.HEADER_DECORATOR + 1)
@@ -43,7 +45,7 @@ public class RbacFilter implements ContainerRequestFilter {
     public static final String RESOURCE = "policies";
 
     @Inject
-    RbacClient rbacClient;
+    RbacCache rbacCache;
 
     @Inject
     RhIdPrincipal user;
@@ -57,6 +59,15 @@ public class RbacFilter implements ContainerRequestFilter {
     @ConfigProperty(name = "rbac.enabled", defaultValue = "true")
     Instance<Boolean> isRbacEnabled;
 
+    @ConfigProperty(name = "rbac.filter.non-blocking", defaultValue = "false")
+    Instance<Boolean> nonBlocking;
+
+    @Inject
+    ManagedExecutor executor;
+
+    @Inject
+    ThreadContext threadContext;
+
     @Override
     public void filter(ContainerRequestContext requestContext) throws IOException {
         if (!isRbacEnabled.get()) {
@@ -70,39 +81,77 @@ public class RbacFilter implements ContainerRequestFilter {
             return;
         }
 
-        RbacRaw result = getRbacResult();
-        if (result == null) {
-            requestContext.abortWith(Response.status(Response.Status.FORBIDDEN).build());
+        if (nonBlocking.get() && requestContext instanceof SuspendableContainerRequestContext) {
+            RbacPermissions cached = rbacCache.getCachedPermissions(user.getOrgId(), user.getName(), user.getRawRhIdHeader());
+            if (cached == null) {
+                filterNonBlocking((SuspendableContainerRequestContext) requestContext);
+                return;
+            }
+            setPermissionsOnPrincipals(requestContext, cached.canReadPolicies(), cached.canWritePolicies(), cached.getHostGroupIds());
             return;
         }
 
-        List<UUID> hostGroupIds = null;
-        try {
-            hostGroupIds = hostGroupsToUUIDs(result.hostGroupIds());
-        } catch (Throwable e) {
-            Log.warnf("RBAC Host group parsing failed when reading %s: %s", result.hostGroupIds(), e);
+        RbacPermissions permissions = getPermissions();
+        if (permissions == null) {
             requestContext.abortWith(Response.status(Response.Status.FORBIDDEN).build());
             return;
         }
 
-        boolean canReadPolicies = result.canRead(APPLICATION, RESOURCE);
-        boolean canWritePolicies = result.canWrite(APPLICATION, RESOURCE);
-        setPermissionsOnPrincipals(requestContext, canReadPolicies, canWritePolicies, hostGroupIds);
+        setPermissionsOnPrincipals(requestContext, permissions.canReadPolicies(), permissions.canWritePolicies(),
+                permissions.getHostGroupIds());
     }
 
-    private RbacRaw getRbacResult() {
-        RbacRaw result;
+    /*
+     * The request is suspended while RBAC answers, so that no worker thread waits for it. Once the
+     * permissions are there, the request goes on on a worker thread, with the request context of
+     * this one, as the resources may block.
+     */
+    private void filterNonBlocking(SuspendableContainerRequestContext requestContext) {
+        long t1 = System.currentTimeMillis();
+        String orgId = user.getOrgId();
+
+        Consumer<RbacPermissions> onPermissions = threadContext.contextualConsumer(permissions -> {
+            setPermissionsOnPrincipals(requestContext, permissions.canReadPolicies(), permissions.canWritePolicies(),
+                    permissions.getHostGroupIds());
+            requestContext.resume();
+        });
+        Consumer<Throwable> onFailure = threadContext.contextualConsumer(e -> {
+            if (e instanceof IllegalArgumentException) {
+                Log.warnf("RBAC Host group parsing failed: %s", e);
+            } else {
+                Log.warn("RBAC call failed", e);
+            }
+            // Resumes the suspended request with the response
+            requestContext.abortWith(Response.status(Response.Status.FORBIDDEN).build());
+        });
+
+        requestContext.suspend();
+        rbacCache.getPermissionsAsync(orgId, user.getName(), user.getRawRhIdHeader())
+                .onTermination().invoke(() -> warnIfSlow(t1, orgId))
+                .emitOn(executor)
+                .subscribe().with(onPermissions, onFailure);
+    }
+
+    private void warnIfSlow(long t1, String orgId) {
+        long t2 = System.currentTimeMillis();
+        if (warnSlowRbac.get() && (t2 - t1) > warnSlowRbacTolerance.get().toMillis()) {
+            Log.warnf("Call to RBAC took %d ms for orgId %s", t2 - t1, orgId);
+        }
+    }
+
+    private RbacPermissions getPermissions() {
+        RbacPermissions result;
         long t1 = System.currentTimeMillis();
         try {
-            result = rbacClient.getRbacInfo(user.getRawRhIdHeader());
+            result = rbacCache.getPermissions(user.getOrgId(), user.getName(), user.getRawRhIdHeader());
+        } catch (IllegalArgumentException e) {
+            Log.warnf("RBAC Host group parsing failed: %s", e);
+            return null;
         } catch (Throwable e) {
             Log.warn("RBAC call failed", e);
             return null;
         } finally {
-            long t2 = System.currentTimeMillis();
-            if (warnSlowRbac.get() && (t2 - t1) > warnSlowRbacTolerance.get().toMillis()) {
-                Log.warnf("Call to RBAC took %d ms for orgId %s", t2 - t1, user.getOrgId());
-            }
+            warnIfSlow(t1, user.getOrgId());
         }
 
         return result;
@@ -0,0 +1,54 @@
+package com.redhat.cloud.policies.app.auth;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * What RBAC allows a user to do in policies. This is what is kept in the
+ * rbac cache instead of the full {@link com.redhat.cloud.policies.app.auth.models.RbacRaw}.
+ */
+public class RbacPermissions {
+
+    private final boolean canReadPolicies;
+    private final boolean canWritePolicies;
+    private final List<UUID> hostGroupIds;
+    private final long loadedAt = System.nanoTime();
+
+    /**
+     * @param hostGroupIds Host groups the user has access to, null if access is not restricted to host groups
+     */
+    public RbacPermissions(boolean canReadPolicies, boolean canWritePolicies, List<UUID> hostGroupIds) {
+        this.canReadPolicies = canReadPolicies;
+        this.canWritePolicies = canWritePolicies;
+        this.hostGroupIds = hostGroupIds;
+    }
+
+    public boolean canReadPolicies() {
+        return canReadPolicies;
+    }
+
+    public boolean canWritePolicies() {
+        return canWritePolicies;
+    }
+
+    public List<UUID> getHostGroupIds() {
+        return hostGroupIds;
+    }
+
+    /**
+     * @return true if these permissions were read from RBAC longer than {@code age} ago
+     */
+    public boolean isOlderThan(Duration age) {
+        return System.nanoTime() - loadedAt > age.toNanos();
+    }
+
+    @Override
+    public String toString() {
+        return "RbacPermissions{" +
+                "canReadPolicies=" + canReadPolicies +
+                ", canWritePolicies=" + canWritePolicies +
+                ", hostGroupIds=" + (hostGroupIds != null ? hostGroupIds.toString() : "any") +
+                '}';
+    }
+}
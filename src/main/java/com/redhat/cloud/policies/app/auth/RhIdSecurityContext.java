@@ -25,10 +25,10 @@ import jakarta.ws.rs.core.SecurityContext;
  */
 public class RhIdSecurityContext implements SecurityContext {
 
-    private XRhIdentity rhIdentity;
+    private RhIdentity rhIdentity;
     private RhIdPrincipal rhPrincipal;
 
-    public RhIdSecurityContext(XRhIdentity rhIdentity, RhIdPrincipal rhPrincipal) {
+    public RhIdSecurityContext(RhIdentity rhIdentity, RhIdPrincipal rhPrincipal) {
         this.rhIdentity = rhIdentity;
         this.rhPrincipal = rhPrincipal;
     }
@@ -0,0 +1,34 @@
+package com.redhat.cloud.policies.app.auth;
+
+/**
+ * The parts of a x-rh-identity header we use. Instances are immutable,
+ * as they are shared by all requests with the same header.
+ */
+public class RhIdentity {
+
+    private final String username;
+    private final String accountNumber;
+    private final String orgId;
+
+    public RhIdentity(String username, String accountNumber, String orgId) {
+        this.username = username;
+        this.accountNumber = accountNumber;
+        this.orgId = orgId;
+    }
+
+    public static RhIdentity from(XRhIdentity xRhIdentity) {
+        return new RhIdentity(xRhIdentity.getUsername(), xRhIdentity.identity.accountNumber, xRhIdentity.identity.orgId);
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getAccountNumber() {
+        return accountNumber;
+    }
+
+    public String getOrgId() {
+        return orgId;
+    }
+}
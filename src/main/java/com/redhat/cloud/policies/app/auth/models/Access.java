@@ -30,21 +30,42 @@ public class Access extends RbacRawCommon {
     @JsonIgnore
     public static final String HOST_GROUPS_KEY = "group.id";
 
-    public String permission;
     public List<ResourceDefinition> resourceDefinitions;
 
-    public String[] getPermissionFields() {
-        if (permission == null) {
-            return new String[3];
-        }
-        return Arrays.copyOf(permission.split(":"), 3);
+    private String permission;
+
+    // Fields of the permission, parsed once when it is set so that checks don't need to split it again
+    private String application;
+    private String resource;
+    private String operation;
+
+    public String getPermission() {
+        return permission;
+    }
+
+    public void setPermission(String permission) {
+        this.permission = permission;
+        String[] fields = permission == null ? new String[3] : Arrays.copyOf(permission.split(":"), 3);
+        application = fields[0];
+        resource = fields[1];
+        operation = fields[2];
+    }
+
+    @JsonIgnore
+    public String getApplication() {
+        return application;
+    }
+
+    /**
+     * @return true if this entry grants the operation on the resource of its application, wildcards included
+     */
+    public boolean allows(String resource, String operation) {
+        return (Objects.equals(this.resource, resource) || ANY.equals(this.resource))
+            && (Objects.equals(this.operation, operation) || ANY.equals(this.operation));
     }
 
     public boolean isInventoryHostsRead() {
-        String[] permissionFields = getPermissionFields();
-        return Objects.equals(permissionFields[0], INVENTORY_HOSTS_READ[0])
-            && (Objects.equals(permissionFields[1], INVENTORY_HOSTS_READ[1]) || Objects.equals(permissionFields[1], ANY))
-            && (Objects.equals(permissionFields[2], INVENTORY_HOSTS_READ[2]) || Objects.equals(permissionFields[2], ANY));
+        return Objects.equals(application, INVENTORY_HOSTS_READ[0]) && allows(INVENTORY_HOSTS_READ[1], INVENTORY_HOSTS_READ[2]);
     }
 
     public List<String> hostGroupIds() {
@@ -17,9 +17,11 @@
 package com.redhat.cloud.policies.app.auth.models;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 public class RbacRaw extends RbacRawCommon {
 
@@ -27,6 +29,9 @@ public class RbacRaw extends RbacRawCommon {
     public Map<String, Integer> meta;
     public List<Access> data;
 
+    @JsonIgnore
+    private volatile Map<String, List<Access>> byApplication;
+
     public boolean canRead(String application, String resource) {
         return findPermission(application, resource, READ_OPERATION);
     }
@@ -54,10 +59,11 @@ public class RbacRaw extends RbacRawCommon {
      */
     public List<String> hostGroupIds() {
         List<String> gids = new ArrayList<String>();
-        if (data == null || data.size() == 0) {
+        List<Access> entries = getIndex().get(INVENTORY_HOSTS_READ[0]);
+        if (entries == null) {
             return gids;
         }
-        for (Access permissionEntry : data) {
+        for (Access permissionEntry : entries) {
             if (permissionEntry.isInventoryHostsRead()) {
                 List<String> permHostGroups = permissionEntry.hostGroupIds();
                 if (permHostGroups == null) {
@@ -71,20 +77,36 @@ public class RbacRaw extends RbacRawCommon {
     }
 
     private boolean findPermission(String application, String resource, String operation) {
-        if (data == null || data.size() == 0) {
+        List<Access> entries = getIndex().get(application);
+        if (entries == null) {
             return false;
         }
 
-        for (Access permissionEntry : data) {
-            String[] fields = permissionEntry.getPermissionFields();
-            if (Objects.equals(fields[0], application)) {
-                if (Objects.equals(fields[1], resource) || Objects.equals(fields[1], ANY)) {
-                    if (Objects.equals(fields[2], operation) || Objects.equals(fields[2], ANY)) {
-                        return true;
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).allows(resource, operation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Access entries by application, built on the first check. Each request checks the
+     * permissions several times, this spares going through all entries for each check.
+     */
+    private Map<String, List<Access>> getIndex() {
+        Map<String, List<Access>> index = byApplication;
+        if (index == null) {
+            index = new HashMap<>();
+            if (data != null) {
+                for (Access permissionEntry : data) {
+                    if (permissionEntry.getApplication() != null) {
+                        index.computeIfAbsent(permissionEntry.getApplication(), k -> new ArrayList<>()).add(permissionEntry);
                     }
                 }
             }
+            byApplication = index;
         }
-        return false;
+        return index;
     }
 }
@@ -16,12 +16,15 @@
  */
 package com.redhat.cloud.policies.app.health;
 
+import com.redhat.cloud.policies.app.lightweight.GuardedLightweightEngine;
 import com.redhat.cloud.policies.app.lightweight.LightweightEngine;
 import com.redhat.cloud.policies.app.StuffHolder;
 import com.redhat.cloud.policies.app.model.Policy;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.scheduler.Scheduled;
+import io.smallrye.faulttolerance.api.CircuitBreakerMaintenance;
+import io.smallrye.faulttolerance.api.CircuitBreakerState;
 import jakarta.annotation.PostConstruct;
 import org.eclipse.microprofile.rest.client.inject.RestClient;
 
@@ -50,9 +53,15 @@ public class ScheduledStatusProducer {
     @Inject
     MeterRegistry registry;
 
+    @Inject
+    CircuitBreakerMaintenance circuitBreakerMaintenance;
+
     @PostConstruct
     void init() {
         Gauge.builder("status_isDegraded", () -> StuffHolder.getInstance().getStatusInfo().size()).register(registry);
+        Gauge.builder("engine_circuit_breaker_state", () -> getCircuitBreakerStateValue(GuardedLightweightEngine.CIRCUIT_BREAKER))
+                .tag("name", GuardedLightweightEngine.CIRCUIT_BREAKER)
+                .register(registry);
     }
 
     @Scheduled(every = "10s")
@@ -80,9 +89,35 @@ public class ScheduledStatusProducer {
             issues.put("engine", e.getMessage());
         }
 
+        CircuitBreakerState state = getCircuitBreakerState(GuardedLightweightEngine.CIRCUIT_BREAKER);
+        if (state != CircuitBreakerState.CLOSED) {
+            issues.put("circuit-breaker-" + GuardedLightweightEngine.CIRCUIT_BREAKER, state.name().toLowerCase());
+        }
+
         StuffHolder.getInstance().setStatusInfo(issues);
     }
 
+    // 0 = closed, 1 = half open, 2 = open
+    private int getCircuitBreakerStateValue(String name) {
+        switch (getCircuitBreakerState(name)) {
+            case OPEN:
+                return 2;
+            case HALF_OPEN:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    private CircuitBreakerState getCircuitBreakerState(String name) {
+        try {
+            return circuitBreakerMaintenance.currentState(name);
+        } catch (IllegalArgumentException e) {
+            // The circuit breaker is only known after the first call to the engine
+            return CircuitBreakerState.CLOSED;
+        }
+    }
+
     public void update() {
         gather();
     }
@@ -0,0 +1,364 @@
+package com.redhat.cloud.policies.app.lightweight;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * In-process parser for the common part of the condition language, e.g.
+ * {@code facts.arch = 'x86_64' AND (facts.number_of_cpus > 4 OR NOT facts.enabled_services contains ['sshd'])}.
+ * <p>
+ * The parser only answers when it is sure. A condition made only of known facts and understood
+ * operators is valid, and a condition with an unterminated string, unbalanced parentheses or a
+ * dangling boolean operator is invalid. Everything else is left to the engine, including the forms
+ * whose handling by the engine is not known for sure: lowercase {@code and}, {@code or} and {@code not},
+ * quoted fact names, double-quoted strings, escapes in strings and the {@code in} and {@code matches}
+ * operators.
+ */
+class ConditionParser {
+
+    enum Verdict {
+        VALID,
+        INVALID,
+        UNDECIDED
+    }
+
+    static class Result {
+        private static final Result VALID = new Result(Verdict.VALID, null);
+        private static final Result UNDECIDED = new Result(Verdict.UNDECIDED, null);
+
+        private final Verdict verdict;
+        private final String message;
+
+        private Result(Verdict verdict, String message) {
+            this.verdict = verdict;
+            this.message = message;
+        }
+
+        static Result invalid(String message) {
+            return new Result(Verdict.INVALID, message);
+        }
+
+        Verdict getVerdict() {
+            return verdict;
+        }
+
+        /**
+         * Reason why the condition is invalid, null otherwise.
+         */
+        String getMessage() {
+            return message;
+        }
+    }
+
+    private enum TokenType {
+        WORD,
+        STRING,
+        NUMBER,
+        OPERATOR,
+        LEFT_PAREN,
+        RIGHT_PAREN,
+        LEFT_BRACKET,
+        RIGHT_BRACKET,
+        COMMA
+    }
+
+    private static class Token {
+        final TokenType type;
+        final String text;
+
+        Token(TokenType type, String text) {
+            this.type = type;
+            this.text = text;
+        }
+
+        boolean isKeyword(String keyword) {
+            return type == TokenType.WORD && text.equalsIgnoreCase(keyword);
+        }
+
+        boolean isBooleanOperator() {
+            return isKeyword("AND") || isKeyword("OR");
+        }
+
+        /*
+         * AND, OR or NOT, but not written in uppercase.
+         */
+        boolean isOtherCaseKeyword() {
+            return (isKeyword("AND") || isKeyword("OR") || isKeyword("NOT")) && !text.equals(text.toUpperCase());
+        }
+    }
+
+    /*
+     * Thrown when the parser meets something it does not understand. The engine may know better,
+     * so this is not an error. No stack trace needed, as this is plain control flow.
+     */
+    private static class UndecidedException extends RuntimeException {
+        UndecidedException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static class InvalidException extends RuntimeException {
+        InvalidException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private final Set<String> knownFacts;
+    private List<Token> tokens;
+    private int position;
+
+    /**
+     * @param knownFacts Full names of the facts a condition may refer to, e.g. {@code facts.arch}
+     */
+    ConditionParser(Set<String> knownFacts) {
+        this.knownFacts = knownFacts;
+    }
+
+    Result parse(String condition) {
+        if (condition == null || condition.isBlank()) {
+            return Result.invalid("Condition is empty");
+        }
+
+        try {
+            tokens = tokenize(condition);
+            // Whether the engine takes them as operators is not known, see the class comment
+            for (Token token : tokens) {
+                if (token.isOtherCaseKeyword()) {
+                    throw new UndecidedException();
+                }
+            }
+            checkStructure();
+            position = 0;
+            parseOr();
+            if (position != tokens.size()) {
+                return Result.UNDECIDED;
+            }
+            return Result.VALID;
+        } catch (InvalidException e) {
+            return Result.invalid(e.getMessage());
+        } catch (UndecidedException e) {
+            return Result.UNDECIDED;
+        }
+    }
+
+    private static List<Token> tokenize(String condition) {
+        List<Token> result = new ArrayList<>();
+        int i = 0;
+        while (i < condition.length()) {
+            char c = condition.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(') {
+                result.add(new Token(TokenType.LEFT_PAREN, "("));
+                i++;
+            } else if (c == ')') {
+                result.add(new Token(TokenType.RIGHT_PAREN, ")"));
+                i++;
+            } else if (c == '[') {
+                result.add(new Token(TokenType.LEFT_BRACKET, "["));
+                i++;
+            } else if (c == ']') {
+                result.add(new Token(TokenType.RIGHT_BRACKET, "]"));
+                i++;
+            } else if (c == ',') {
+                result.add(new Token(TokenType.COMMA, ","));
+                i++;
+            } else if (c == '"') {
+                // Like the escapes below, not known to be read the same way by the engine
+                throw new UndecidedException();
+            } else if (c == '\'') {
+                StringBuilder sb = new StringBuilder();
+                int j = i + 1;
+                while (j < condition.length() && condition.charAt(j) != c) {
+                    if (condition.charAt(j) == '\\') {
+                        throw new UndecidedException();
+                    }
+                    sb.append(condition.charAt(j));
+                    j++;
+                }
+                if (j == condition.length()) {
+                    throw new InvalidException("Unterminated string starting at position " + i);
+                }
+                result.add(new Token(TokenType.STRING, sb.toString()));
+                i = j + 1;
+            } else if (Character.isDigit(c) || (c == '-' && i + 1 < condition.length() && Character.isDigit(condition.charAt(i + 1)))) {
+                int j = i + 1;
+                while (j < condition.length() && (Character.isDigit(condition.charAt(j)) || condition.charAt(j) == '.')) {
+                    j++;
+                }
+                String number = condition.substring(i, j);
+                if (!number.matches("-?\\d+(\\.\\d+)?")) {
+                    throw new UndecidedException();
+                }
+                result.add(new Token(TokenType.NUMBER, number));
+                i = j;
+            } else if (Character.isLetter(c) || c == '_') {
+                int j = i + 1;
+                while (j < condition.length()
+                        && (Character.isLetterOrDigit(condition.charAt(j)) || condition.charAt(j) == '_' || condition.charAt(j) == '.')) {
+                    j++;
+                }
+                result.add(new Token(TokenType.WORD, condition.substring(i, j)));
+                i = j;
+            } else if (c == '=' || c == '!' || c == '<' || c == '>') {
+                int j = i + 1;
+                if (j < condition.length() && condition.charAt(j) == '=') {
+                    j++;
+                }
+                String operator = condition.substring(i, j);
+                if (operator.equals("!")) {
+                    throw new UndecidedException();
+                }
+                result.add(new Token(TokenType.OPERATOR, operator));
+                i = j;
+            } else {
+                throw new UndecidedException();
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Mistakes no variant of the grammar can accept.
+     */
+    private void checkStructure() {
+        int parens = 0;
+        int brackets = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            Token next = i + 1 < tokens.size() ? tokens.get(i + 1) : null;
+            switch (token.type) {
+                case LEFT_PAREN:
+                    parens++;
+                    if (next != null && next.type == TokenType.RIGHT_PAREN) {
+                        throw new InvalidException("Empty parentheses");
+                    }
+                    break;
+                case RIGHT_PAREN:
+                    if (--parens < 0) {
+                        throw new InvalidException("Unbalanced parentheses");
+                    }
+                    break;
+                case LEFT_BRACKET:
+                    brackets++;
+                    break;
+                case RIGHT_BRACKET:
+                    if (--brackets < 0) {
+                        throw new InvalidException("Unbalanced brackets");
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (token.isBooleanOperator()) {
+                if (i == 0) {
+                    throw new InvalidException("Condition starts with " + token.text);
+                }
+                if (next == null || next.isBooleanOperator() || next.type == TokenType.RIGHT_PAREN) {
+                    throw new InvalidException("Missing operand after " + token.text);
+                }
+            }
+            if (token.isKeyword("NOT") && (next == null || next.isBooleanOperator())) {
+                throw new InvalidException("Missing operand after " + token.text);
+            }
+        }
+        if (parens != 0) {
+            throw new InvalidException("Unbalanced parentheses");
+        }
+        if (brackets != 0) {
+            throw new InvalidException("Unbalanced brackets");
+        }
+    }
+
+    private void parseOr() {
+        parseAnd();
+        while (peek() != null && peek().isKeyword("OR")) {
+            position++;
+            parseAnd();
+        }
+    }
+
+    private void parseAnd() {
+        parseUnary();
+        while (peek() != null && peek().isKeyword("AND")) {
+            position++;
+            parseUnary();
+        }
+    }
+
+    private void parseUnary() {
+        Token token = next();
+        if (token.isKeyword("NOT")) {
+            parseUnary();
+        } else if (token.type == TokenType.LEFT_PAREN) {
+            parseOr();
+            expect(TokenType.RIGHT_PAREN);
+        } else {
+            parseComparison(token);
+        }
+    }
+
+    private void parseComparison(Token key) {
+        if (key.type != TokenType.WORD || !knownFacts.contains(key.text)) {
+            throw new UndecidedException();
+        }
+
+        Token operator = next();
+        if (operator.type == TokenType.OPERATOR) {
+            switch (operator.text) {
+                case "=":
+                case "!=":
+                    expect(TokenType.STRING, TokenType.NUMBER);
+                    break;
+                case ">":
+                case ">=":
+                case "<":
+                case "<=":
+                    expect(TokenType.NUMBER);
+                    break;
+                default:
+                    throw new UndecidedException();
+            }
+        } else if (operator.isKeyword("contains")) {
+            if (peek() != null && peek().type == TokenType.LEFT_BRACKET) {
+                parseList();
+            } else {
+                expect(TokenType.STRING);
+            }
+        } else {
+            throw new UndecidedException();
+        }
+    }
+
+    private void parseList() {
+        expect(TokenType.LEFT_BRACKET);
+        expect(TokenType.STRING, TokenType.NUMBER);
+        while (peek() != null && peek().type == TokenType.COMMA) {
+            position++;
+            expect(TokenType.STRING, TokenType.NUMBER);
+        }
+        expect(TokenType.RIGHT_BRACKET);
+    }
+
+    private Token peek() {
+        return position < tokens.size() ? tokens.get(position) : null;
+    }
+
+    private Token next() {
+        if (position >= tokens.size()) {
+            throw new UndecidedException();
+        }
+        return tokens.get(position++);
+    }
+
+    private void expect(TokenType... types) {
+        Token token = next();
+        for (TokenType type : types) {
+            if (token.type == type) {
+                return;
+            }
+        }
+        throw new UndecidedException();
+    }
+}
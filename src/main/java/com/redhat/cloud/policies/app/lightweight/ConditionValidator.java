@@ -0,0 +1,138 @@
+package com.redhat.cloud.policies.app.lightweight;
+
+import com.redhat.cloud.policies.app.model.Fact;
+import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Uni;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.validation.ValidationException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Validates policy conditions. Conditions the {@link ConditionParser} can decide on are validated
+ * in-process, only the others are sent to the engine.
+ */
+@ApplicationScoped
+public class ConditionValidator {
+
+    @Inject
+    EngineValidationCache engineValidationCache;
+
+    // Facts only change with DB migrations, so they are loaded once
+    volatile Set<String> knownFacts;
+
+    /**
+     * Same contract as {@link LightweightEngine#validateCondition(String)}.
+     *
+     * @throws ValidationException if the condition is not valid
+     */
+    public void validateCondition(String condition) {
+        if (!validateLocally(condition)) {
+            validateRemotely(condition);
+        }
+    }
+
+    /**
+     * Validate the condition with the engine, or with the cached outcome of an earlier engine call
+     * for the same condition.
+     *
+     * @throws ValidationException if the condition is not valid
+     */
+    public void validateRemotely(String condition) {
+        Optional<String> error = engineValidationCache.validateCondition(normalize(condition));
+        if (error.isPresent()) {
+            throw new ValidationException(error.get());
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #validateCondition(String)}. Only the engine call is asynchronous,
+     * the local validation happens on the calling thread.
+     *
+     * @return a Uni failing with a {@link ValidationException} if the condition is not valid
+     */
+    public Uni<Void> validateConditionAsync(String condition) {
+        try {
+            if (validateLocally(condition)) {
+                return Uni.createFrom().voidItem();
+            }
+        } catch (ValidationException e) {
+            return Uni.createFrom().failure(e);
+        }
+        return engineValidationCache.validateConditionAsync(normalize(condition))
+                .map(error -> {
+                    if (error.isPresent()) {
+                        throw new ValidationException(error.get());
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * Validate the condition without calling the engine. This needs a request context or a transaction
+     * the first time, as the facts are read from the database.
+     *
+     * @return true if the condition is valid, false if only the engine can tell
+     * @throws ValidationException if the condition is not valid
+     */
+    public boolean validateLocally(String condition) {
+        ConditionParser.Result result = new ConditionParser(getKnownFacts()).parse(condition);
+        switch (result.getVerdict()) {
+            case VALID:
+                return true;
+            case INVALID:
+                throw new ValidationException("Validation failed: " + result.getMessage());
+            default:
+                Log.debugf("Condition [%s] needs to be validated by the engine", condition);
+                return false;
+        }
+    }
+
+    /*
+     * Collapses runs of whitespace outside of quoted strings into a single blank, so that
+     * conditions only differing in formatting share one cache entry.
+     */
+    static String normalize(String condition) {
+        if (condition == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(condition.length());
+        char quote = 0;
+        boolean pendingBlank = false;
+        for (int i = 0; i < condition.length(); i++) {
+            char c = condition.charAt(i);
+            if (quote != 0) {
+                sb.append(c);
+                if (c == '\\' && i + 1 < condition.length()) {
+                    sb.append(condition.charAt(++i));
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (Character.isWhitespace(c)) {
+                pendingBlank = sb.length() > 0;
+            } else {
+                if (pendingBlank) {
+                    sb.append(' ');
+                    pendingBlank = false;
+                }
+                if (c == '\'' || c == '"') {
+                    quote = c;
+                }
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private Set<String> getKnownFacts() {
+        Set<String> facts = knownFacts;
+        if (facts == null) {
+            facts = Fact.getFacts().stream().map(fact -> fact.name).collect(Collectors.toUnmodifiableSet());
+            knownFacts = facts;
+        }
+        return facts;
+    }
+}
@@ -0,0 +1,65 @@
+package com.redhat.cloud.policies.app.lightweight;
+
+import io.quarkus.cache.CacheResult;
+import io.smallrye.mutiny.Uni;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.validation.ValidationException;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+
+@ApplicationScoped
+public class EngineValidationCache {
+
+    public static final String CACHE_NAME = "engine-validation-cache";
+
+    @Inject
+    GuardedLightweightEngine lightweightEngine;
+
+    /*
+     * Both outcomes of the validation are cached, so that a condition the engine rejected
+     * is not sent again. Any other Exception (engine not reachable, 5xx...) bubbles out of the
+     * method and is not cached, the next call retries the remote.
+     * Size and TTL of the cache are defined in application.properties
+     * quarkus.cache.caffeine.engine-validation-cache.*
+     *
+     * The condition must be normalized by the caller, see ConditionValidator#normalize,
+     * or the same condition will end up several times in the cache.
+     *
+     * Returns the error message of the engine or an empty Optional if the condition is valid.
+     */
+    @CacheResult(cacheName = CACHE_NAME)
+    public Optional<String> validateCondition(String normalizedCondition) {
+        try {
+            lightweightEngine.validateCondition(normalizedCondition).await().indefinitely();
+            return Optional.empty();
+        } catch (ValidationException e) {
+            return Optional.of(e.getMessage());
+        }
+    }
+
+    /*
+     * Same as above, without blocking the calling thread. Both methods share the cache, as
+     * the item emitted by the Uni is cached and not the Uni itself.
+     *
+     * The cache also coalesces concurrent calls: while the engine call for a condition is in
+     * flight, further calls for the same condition wait for its outcome instead of sending
+     * the same request again.
+     */
+    @CacheResult(cacheName = CACHE_NAME)
+    public Uni<Optional<String>> validateConditionAsync(String normalizedCondition) {
+        return lightweightEngine.validateCondition(normalizedCondition)
+                .map(ignored -> Optional.<String>empty())
+                .onFailure(EngineValidationCache::isValidationFailure)
+                .recoverWithItem(t -> Optional.of(unwrap(t).getMessage()));
+    }
+
+    private static boolean isValidationFailure(Throwable t) {
+        return unwrap(t) instanceof ValidationException;
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+    }
+}
@@ -0,0 +1,40 @@
+package com.redhat.cloud.policies.app.lightweight;
+
+import io.smallrye.faulttolerance.api.CircuitBreakerName;
+import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.faulttolerance.Bulkhead;
+import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.validation.ValidationException;
+
+/*
+ * All validations go through here, blocking or not, so that they share one circuit breaker and one
+ * bulkhead. When the engine degrades, callers fail fast with a CircuitBreakerOpenException / BulkheadException
+ * instead of each waiting for the read timeout. A ValidationException is a regular answer of the engine and
+ * does not count as failure. There are no retries on purpose: a retry only adds load to an engine that is
+ * already struggling.
+ */
+@ApplicationScoped
+public class GuardedLightweightEngine {
+
+    public static final String CIRCUIT_BREAKER = "engine";
+
+    @Inject
+    @RestClient
+    ReactiveLightweightEngine reactiveLightweightEngine;
+
+    /**
+     * Validates a condition like {@code facts.arch = 'x86_64'} with the engine. Blocking callers await the Uni.
+     * @param condition the condition to validate
+     * @return a Uni failing with a {@link ValidationException} if the condition is not valid
+     */
+    @CircuitBreaker(requestVolumeThreshold = 10, failureRatio = 0.5, delay = 5000, successThreshold = 2, skipOn = ValidationException.class)
+    @CircuitBreakerName(CIRCUIT_BREAKER)
+    @Bulkhead(value = 20, waitingTaskQueue = 50)
+    public Uni<Void> validateCondition(String condition) {
+        return reactiveLightweightEngine.validateCondition(condition);
+    }
+}
@@ -11,7 +11,10 @@ import jakarta.ws.rs.Path;
 
 import static jakarta.ws.rs.core.MediaType.TEXT_PLAIN;
 
-// TODO POL-649 Retries on all calls: https://quarkus.io/guides/smallrye-fault-tolerance
+/*
+ * Only used by the status probe, which must reach the engine even when the circuit breaker is open.
+ * The validations go through GuardedLightweightEngine.
+ */
 @Path("/lightweight-engine")
 @RegisterRestClient(configKey = "engine")
 @RegisterProvider(EngineResponseExceptionMapper.class)
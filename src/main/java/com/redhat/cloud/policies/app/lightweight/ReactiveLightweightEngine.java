@@ -0,0 +1,34 @@
+package com.redhat.cloud.policies.app.lightweight;
+
+import com.redhat.cloud.policies.app.EngineResponseExceptionMapper;
+import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.rest.client.annotation.RegisterProvider;
+import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.PUT;
+import jakarta.ws.rs.Path;
+
+import static jakarta.ws.rs.core.MediaType.TEXT_PLAIN;
+
+/**
+ * Non-blocking variant of {@link LightweightEngine}. It shares the configuration of the
+ * blocking client (configKey engine), so the url and timeouts are the same. It is only called
+ * through {@link GuardedLightweightEngine}, which adds the circuit breaker and the bulkhead.
+ */
+@Path("/lightweight-engine")
+@RegisterRestClient(configKey = "engine")
+@RegisterProvider(EngineResponseExceptionMapper.class)
+public interface ReactiveLightweightEngine {
+
+    /**
+     * Validates a condition like {@code facts.arch = 'x86_64'} with Hawkular.
+     * @param condition the condition to validate
+     * @return a Uni failing with a {@link jakarta.validation.ValidationException} if the condition is not valid
+     */
+    @PUT
+    @Path("/validate")
+    @Consumes(TEXT_PLAIN)
+    Uni<Void> validateCondition(@NotNull String condition);
+}
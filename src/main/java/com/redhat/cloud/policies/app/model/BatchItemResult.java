@@ -0,0 +1,62 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.cloud.policies.app.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import java.util.UUID;
+
+/**
+ * Outcome for one policy of a batch import. The status follows the one
+ * the single policy endpoint would have returned for it.
+ */
+@Schema(description = "Outcome for one policy of a batch")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult {
+
+    @Schema(description = "Position of the policy in the batch, starting at 0")
+    public int index;
+    public String name;
+    @Schema(description = "Id of the stored policy, absent if it was not stored")
+    public UUID id;
+    @Schema(description = "201 if the policy was stored, 400 if it is invalid, 409 if its name is taken")
+    public int status;
+    @Schema(description = "Reason for failure")
+    public String msg;
+
+    public BatchItemResult(int index, String name) {
+        this.index = index;
+        this.name = name;
+    }
+
+    public void created(UUID id) {
+        this.id = id;
+        this.status = 201;
+    }
+
+    public void failed(int status, String msg) {
+        this.status = status;
+        this.msg = msg;
+    }
+
+    @JsonIgnore
+    public boolean isFailed() {
+        return msg != null;
+    }
+}
@@ -19,6 +19,8 @@ package com.redhat.cloud.policies.app.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.redhat.cloud.policies.app.model.pager.CountMode;
+import com.redhat.cloud.policies.app.model.pager.Cursor;
 import com.redhat.cloud.policies.app.model.pager.Page;
 import com.redhat.cloud.policies.app.model.pager.Pager;
 import com.redhat.cloud.policies.app.model.annotations.QueryableColumn;
@@ -26,18 +28,24 @@ import com.redhat.cloud.policies.app.model.filter.Filter;
 import com.redhat.cloud.policies.app.model.validation.ValidActionS;
 import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
 import io.quarkus.hibernate.orm.panache.PanacheQuery;
+import io.quarkus.panache.common.Parameters;
 import io.quarkus.panache.common.Sort;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.Id;
+import jakarta.persistence.TypedQuery;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -45,11 +53,17 @@ import jakarta.validation.constraints.Size;
 import io.quarkus.runtime.annotations.RegisterForReflection;
 import org.eclipse.microprofile.openapi.annotations.enums.SchemaType;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.StatelessSession;
 
 @Entity
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Policy extends PanacheEntityBase {
 
+    // Sort columns that can be used with keyset paging. They must not be nullable, see V18 and V31.
+    private static final List<String> KEYSET_COLUMNS = List.of("name", "mtime", "lastTriggered", "isEnabled");
+
     // The ID will be created by code.
     @Id
     public
@@ -141,21 +155,179 @@ public class Policy extends PanacheEntityBase {
     public static Page<Policy> pagePoliciesForCustomer(EntityManager em, String orgid, Pager pager) {
         Filter filter = pager.getFilter().and("orgId", Filter.Operator.EQUAL, orgid);
 
-        PanacheQuery<Policy> panacheQuery = find(
-                filter.getQuery(),
-                pager.getSort(),
-                filter.getParameters()
+        if (pager.isKeysetPaging()) {
+            return seekPoliciesForCustomer(filter, pager);
+        }
+
+        // The total is computed by the window function along with the rows, which saves a second round-trip.
+        TypedQuery<Object[]> query = em.createQuery(
+                "SELECT p, COUNT(*) OVER () FROM Policy p WHERE " + filter.getQuery() + getOrderBy(pager.getSort()),
+                Object[].class
         );
+        filter.getParameters().map().forEach(query::setParameter);
 
         if (pager.getLimit() != Pager.NO_LIMIT) {
-            panacheQuery.range(pager.getOffset(), pager.getOffset() + pager.getLimit() - 1);
+            query.setFirstResult(pager.getOffset());
+            query.setMaxResults(pager.getLimit());
         }
 
-        return new Page<>(
-                panacheQuery.list(),
-                pager,
-                panacheQuery.count()
+        List<Object[]> rows = query.getResultList();
+        List<Policy> policies = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            policies.add((Policy) row[0]);
+        }
+
+        long totalCount;
+        if (!rows.isEmpty()) {
+            totalCount = (Long) rows.get(0)[1];
+        } else if (pager.getOffset() > 0) {
+            // No row carries the total when the offset is past the last policy
+            totalCount = count(filter.getQuery(), filter.getParameters());
+        } else {
+            totalCount = 0;
+        }
+
+        return new Page<>(policies, pager, totalCount);
+    }
+
+    private static String getOrderBy(Sort sort) {
+        if (sort == null || sort.getColumns().isEmpty()) {
+            return "";
+        }
+        // Column names come from the pager, which only lets through sortable fields
+        return sort.getColumns().stream()
+                .map(column -> "p." + column.getName() + (column.getDirection() == Sort.Direction.Descending ? " DESC" : " ASC"))
+                .collect(Collectors.joining(", ", " ORDER BY ", ""));
+    }
+
+    /*
+     * Keyset paging: instead of skipping `offset` rows, the page starts right after the
+     * sort key and id stored in the cursor. The id is used as tie-breaker, so the order is total.
+     */
+    private static Page<Policy> seekPoliciesForCustomer(Filter filter, Pager pager) {
+        List<Sort.Column> columns = pager.getSort().getColumns();
+        if (columns.size() != 1) {
+            throw new IllegalArgumentException("Cursor paging requires exactly one sort column");
+        }
+        String column = columns.get(0).getName();
+        Sort.Direction direction = columns.get(0).getDirection();
+        if (!KEYSET_COLUMNS.contains(column)) {
+            throw new IllegalArgumentException("Cursor paging is not supported for sort column [" + column + "]");
+        }
+
+        String query = filter.getQuery();
+        Parameters parameters = new Parameters();
+        filter.getParameters().map().forEach(parameters::and);
+
+        Cursor cursor = pager.getCursor();
+        if (cursor != null) {
+            if (!cursor.getColumn().equals(column) || cursor.getDirection() != direction) {
+                throw new IllegalArgumentException("Cursor does not match the requested sort");
+            }
+            query += " and (" + getSeekCondition(column, direction, cursor) + ")";
+            parameters.and("cursorId", cursor.getId());
+            if (!column.equals("isEnabled")) {
+                parameters.and("cursorValue", parseSortKey(column, cursor.getValue()));
+            }
+        }
+
+        PanacheQuery<Policy> panacheQuery = find(
+                query,
+                Sort.by(column, direction).and("id", direction),
+                parameters
         );
+
+        List<Policy> policies;
+        Cursor nextCursor = null;
+        if (pager.getLimit() != Pager.NO_LIMIT) {
+            // Fetch one more than requested, to know if there is a next page
+            policies = panacheQuery.range(0, pager.getLimit()).list();
+            if (policies.size() > pager.getLimit()) {
+                policies = policies.subList(0, pager.getLimit());
+                Policy last = policies.get(policies.size() - 1);
+                nextCursor = new Cursor(column, direction, last.getSortKey(column), last.id);
+            }
+        } else {
+            policies = panacheQuery.list();
+        }
+
+        long totalCount;
+        switch (pager.getCountMode()) {
+            case NONE:
+                totalCount = Page.UNKNOWN_COUNT;
+                break;
+            case ESTIMATE:
+                totalCount = countUpTo(filter, CountMode.ESTIMATE_LIMIT);
+                break;
+            default:
+                totalCount = count(filter.getQuery(), filter.getParameters());
+        }
+        return new Page<>(policies, pager, totalCount, pager.getCountMode(), nextCursor, nextCursor != null);
+    }
+
+    /*
+     * Only reads the ids of up to maxCount policies, instead of counting them all.
+     */
+    private static long countUpTo(Filter filter, int maxCount) {
+        return find(filter.getQuery(), filter.getParameters())
+                .project(PolicyId.class)
+                .range(0, maxCount - 1)
+                .list()
+                .size();
+    }
+
+    private static String getSeekCondition(String column, Sort.Direction direction, Cursor cursor) {
+        String idOperator = direction == Sort.Direction.Ascending ? ">" : "<";
+
+        if (column.equals("isEnabled")) {
+            // Booleans only have two values, so spell out what comes after the cursor
+            boolean value = Boolean.parseBoolean(cursor.getValue());
+            boolean following = direction == Sort.Direction.Ascending;
+            String sameValue = String.format("(isEnabled = %s and id %s :cursorId)", value, idOperator);
+            if (value == following) {
+                return sameValue;
+            }
+            return String.format("isEnabled = %s or %s", following, sameValue);
+        }
+
+        String operator = direction == Sort.Direction.Ascending ? ">" : "<";
+        return String.format("%1$s %2$s :cursorValue or (%1$s = :cursorValue and id %3$s :cursorId)",
+                column, operator, idOperator);
+    }
+
+    private static Object parseSortKey(String column, String value) {
+        switch (column) {
+            case "name":
+                return value;
+            case "mtime":
+                String[] parts = value.split(":", 2);
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Invalid cursor value [" + value + "]");
+                }
+                Timestamp timestamp = new Timestamp(Long.parseLong(parts[0]));
+                timestamp.setNanos(Integer.parseInt(parts[1]));
+                return timestamp;
+            case "lastTriggered":
+                return Long.parseLong(value);
+            default:
+                throw new IllegalArgumentException("Cursor paging is not supported for sort column [" + column + "]");
+        }
+    }
+
+    String getSortKey(String column) {
+        switch (column) {
+            case "name":
+                return name;
+            case "mtime":
+                // Epoch millis and nanos instead of Timestamp#toString, which depends on the time zone of the JVM
+                return mtime.getTime() + ":" + mtime.getNanos();
+            case "lastTriggered":
+                return Long.toString(lastTriggered);
+            case "isEnabled":
+                return Boolean.toString(isEnabled);
+            default:
+                throw new IllegalArgumentException("Cursor paging is not supported for sort column [" + column + "]");
+        }
     }
 
     public static List<UUID> getPolicyIdsForCustomer(EntityManager em, String orgId, Pager pager) {
@@ -170,6 +342,19 @@ public class Policy extends PanacheEntityBase {
         return panacheQuery.project(PolicyId.class).list().stream().map(policyId -> policyId.id).collect(Collectors.toList());
     }
 
+    /**
+     * Forward-only cursor over all policies of the org, meant for exports. Rows are fetched from the
+     * database in chunks of {@code fetchSize}, which needs the session to be inside a transaction.
+     * With a stateless session nothing is kept in a persistence context, so memory use does not grow
+     * with the number of policies.
+     */
+    public static ScrollableResults<Policy> scrollPoliciesForCustomer(StatelessSession session, String orgId, int fetchSize) {
+        return session.createQuery("FROM Policy WHERE orgId = :orgId ORDER BY name", Policy.class)
+                .setParameter("orgId", orgId)
+                .setFetchSize(fetchSize)
+                .scroll(ScrollMode.FORWARD_ONLY);
+    }
+
     public static Policy findById(String orgId, UUID theId) {
         return find("orgId = ?1 and id = ?2", orgId, theId).firstResult();
     }
@@ -178,6 +363,57 @@ public class Policy extends PanacheEntityBase {
         return find("orgId = ?1 and name = ?2", orgId, name).firstResult();
     }
 
+    /**
+     * Delete the policies of the org with the passed ids in a single statement.
+     * Ids that do not exist or belong to a different org are ignored.
+     *
+     * @return The ids of the policies that were actually deleted
+     */
+    @SuppressWarnings("unchecked")
+    public static List<UUID> deleteByIds(EntityManager em, String orgId, List<UUID> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return em.createNativeQuery("DELETE FROM policy WHERE org_id = :orgId AND id = ANY(:ids) RETURNING id", UUID.class)
+                .setParameter("orgId", orgId)
+                .setParameter("ids", ids.toArray(new UUID[0]))
+                .getResultList();
+    }
+
+    /**
+     * Enable or disable the policies of the org with the passed ids in a single statement.
+     * Ids that do not exist or belong to a different org are ignored.
+     *
+     * @return The ids of the policies that were actually updated
+     */
+    @SuppressWarnings("unchecked")
+    public static List<UUID> setEnabledByIds(EntityManager em, String orgId, List<UUID> ids, boolean enabled) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return em.createNativeQuery("UPDATE policy SET is_enabled = :enabled, mtime = :mtime " +
+                        "WHERE org_id = :orgId AND id = ANY(:ids) RETURNING id", UUID.class)
+                .setParameter("enabled", enabled)
+                // Same clock as setMtimeToNow(), the database may live in a different time zone
+                .setParameter("mtime", new Timestamp(System.currentTimeMillis()))
+                .setParameter("orgId", orgId)
+                .setParameter("ids", ids.toArray(new UUID[0]))
+                .getResultList();
+    }
+
+    /**
+     * Find out which of the passed names are already taken by policies of the org, with a single query.
+     */
+    public static Set<String> findExistingNames(EntityManager em, String orgId, Collection<String> names) {
+        if (names.isEmpty()) {
+            return new HashSet<>();
+        }
+        return new HashSet<>(em.createQuery("SELECT p.name FROM Policy p WHERE p.orgId = :orgId AND p.name IN :names", String.class)
+                .setParameter("orgId", orgId)
+                .setParameter("names", names)
+                .getResultList());
+    }
+
     public void delete(Policy policy) {
         if (policy == null || !policy.isPersistent()) {
             throw new IllegalStateException("Policy was not persisted");
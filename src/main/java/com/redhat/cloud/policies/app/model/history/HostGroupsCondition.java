@@ -0,0 +1,72 @@
+package com.redhat.cloud.policies.app.model.history;
+
+import jakarta.persistence.Query;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Restricts the history to the hosts of some host groups. The condition has at most one parameter, whatever the
+ * number of groups, so that the SQL text only depends on which of the cases below applies:
+ * <ul>
+ *     <li>no restriction, if the user may see all groups</li>
+ *     <li>the hosts of the groups, with a semi-join on policies_history_host_group</li>
+ *     <li>the hosts without group, if the list contains a null</li>
+ * </ul>
+ * It is built once per request and used for both the count and the find. The queries using it must bind
+ * {@code :orgId} and {@code :policyId}.
+ */
+class HostGroupsCondition {
+
+    static final HostGroupsCondition NONE = new HostGroupsCondition("", null);
+
+    private static final String PARAMETER = "hostGroups";
+    // policies_history_host_group is maintained by a trigger on insert, see V28
+    private static final String IN_GROUPS = "id IN (SELECT history_id FROM policies_history_host_group"
+            + " WHERE org_id = :orgId AND policy_id = :policyId AND group_id = ANY(:" + PARAMETER + "))";
+    private static final String UNGROUPED = "host_groups = '[]'";
+
+    private final String sql;
+    private final UUID[] groupIds;
+
+    private HostGroupsCondition(String sql, UUID[] groupIds) {
+        this.sql = sql;
+        this.groupIds = groupIds;
+    }
+
+    static HostGroupsCondition of(List<UUID> hostGroupIds) {
+        if (hostGroupIds == null) {
+            return NONE;
+        }
+
+        boolean ungrouped = false;
+        List<UUID> groupIds = new ArrayList<>(hostGroupIds.size());
+        for (UUID hostGroupId : hostGroupIds) {
+            if (hostGroupId == null) {
+                ungrouped = true;
+            } else {
+                groupIds.add(hostGroupId);
+            }
+        }
+
+        if (groupIds.isEmpty()) {
+            return new HostGroupsCondition(ungrouped ? " AND " + UNGROUPED : " AND 1=0", null);
+        }
+        String condition = ungrouped ? "(" + IN_GROUPS + " OR " + UNGROUPED + ")" : IN_GROUPS;
+        // Bound as a single uuid[]
+        return new HostGroupsCondition(" AND " + condition, groupIds.toArray(new UUID[0]));
+    }
+
+    /**
+     * @return The condition, starting with {@code AND}, or an empty string if there is no restriction
+     */
+    String getSql() {
+        return sql;
+    }
+
+    void setParameter(Query query) {
+        if (groupIds != null) {
+            query.setParameter(PARAMETER, groupIds);
+        }
+    }
+}
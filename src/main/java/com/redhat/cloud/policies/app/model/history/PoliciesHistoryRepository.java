@@ -1,15 +1,16 @@
 package com.redhat.cloud.policies.app.model.history;
 
+import com.redhat.cloud.policies.app.model.engine.HistoryItem;
 import com.redhat.cloud.policies.app.model.filter.Filter;
+import com.redhat.cloud.policies.app.model.pager.CountMode;
+import com.redhat.cloud.policies.app.model.pager.Cursor;
+import com.redhat.cloud.policies.app.model.pager.Page;
 import com.redhat.cloud.policies.app.model.pager.Pager;
 import io.quarkus.logging.Log;
 import io.quarkus.panache.common.Sort;
 
 import org.hibernate.query.NativeQuery;
 
-import io.vertx.core.json.JsonArray;
-import io.vertx.core.json.JsonObject;
-
 import org.hibernate.Session;
 
 import jakarta.enterprise.context.ApplicationScoped;
@@ -20,6 +21,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 
 import static com.redhat.cloud.policies.app.model.filter.Filter.Operator.LIKE;
 
@@ -31,13 +35,99 @@ public class PoliciesHistoryRepository {
 
     private static final String tableName = PoliciesHistoryEntry.class.getAnnotation(Table.class).name();
 
+    // Upper bound of the template cache, far above the number of shapes the REST API can produce
+    private static final int MAX_TEMPLATES = 1000;
+
+    /*
+     * SQL of the queries, per shape: the kind of query, the host groups condition, the filtered fields and operators
+     * and the sort. The values are all bound as parameters, so that the text of the queries does not depend on them.
+     * Reusing the same string lets Hibernate hit its query plan cache and the JDBC driver reuse its server-side
+     * prepared statements.
+     */
+    private final ConcurrentMap<List<Object>, String> templates = new ConcurrentHashMap<>();
+
+    /*
+     * What the queries of the pages read: the full entities, or only the columns of the HistoryItems returned
+     * by the REST API. The latter skips the entity management and the decoding of the host_groups JSON.
+     */
+    private abstract static class Projection<T> {
+        final String columns;
+
+        Projection(String columns) {
+            this.columns = columns;
+        }
+
+        abstract NativeQuery<T> createQuery(Session session, String sql);
+
+        abstract UUID getId(T row);
+
+        abstract long getCtime(T row);
+    }
+
+    private static final Projection<PoliciesHistoryEntry> ENTRIES = new Projection<>("*") {
+        @Override
+        NativeQuery<PoliciesHistoryEntry> createQuery(Session session, String sql) {
+            return session.createNativeQuery(sql, PoliciesHistoryEntry.class);
+        }
+
+        @Override
+        UUID getId(PoliciesHistoryEntry entry) {
+            return entry.getId();
+        }
+
+        @Override
+        long getCtime(PoliciesHistoryEntry entry) {
+            return entry.getCtime();
+        }
+    };
+
+    // The id of the entry is only read for the cursor of the next page
+    private static class ItemRow {
+        final UUID id;
+        final HistoryItem item;
+
+        ItemRow(UUID id, HistoryItem item) {
+            this.id = id;
+            this.item = item;
+        }
+    }
+
+    private static final Projection<ItemRow> ITEMS = new Projection<>("id, ctime, host_id, host_name") {
+        @Override
+        NativeQuery<ItemRow> createQuery(Session session, String sql) {
+            return session.createNativeQuery(sql, Object[].class)
+                    .addScalar("id", UUID.class)
+                    .addScalar("ctime", Long.class)
+                    .addScalar("host_id", String.class)
+                    .addScalar("host_name", String.class)
+                    .setTupleTransformer((tuple, aliases) ->
+                            new ItemRow((UUID) tuple[0], new HistoryItem((Long) tuple[1], (String) tuple[2], (String) tuple[3])));
+        }
+
+        @Override
+        UUID getId(ItemRow row) {
+            return row.id;
+        }
+
+        @Override
+        long getCtime(ItemRow row) {
+            return row.item.ctime;
+        }
+    };
+
     public long count(String orgId, List<UUID> hostGroupIds, UUID policyId, Pager pager) {
-        // Base SQL query.
-        String sql = String.format("SELECT COUNT(*) AS count FROM %s WHERE org_id = :orgId AND policy_id = :policyId",
-                                   tableName);
+        return count(orgId, HostGroupsCondition.of(hostGroupIds), policyId, pager);
+    }
 
-        sql = addHostGroupsConditions(sql, hostGroupIds);
-        sql = addFiltersConditions(sql, pager.getFilter().getItems());
+    private long count(String orgId, HostGroupsCondition hostGroups, UUID policyId, Pager pager) {
+        String sql = getTemplate(List.of("count", hostGroups.getSql(), getFiltersShape(pager)), () -> {
+            // Base SQL query.
+            String template = String.format("SELECT COUNT(*) AS count FROM %s WHERE org_id = :orgId AND policy_id = :policyId",
+                                            tableName);
+
+            template += hostGroups.getSql();
+            return addFiltersConditions(template, pager.getFilter().getItems());
+        });
 
         Log.tracef("SQL query ready to be executed: %s", sql);
 
@@ -46,48 +136,137 @@ public class PoliciesHistoryRepository {
                 .setParameter("orgId", orgId)
                 .setParameter("policyId", policyId.toString());
 
-        setHostGroupsValues(query, hostGroupIds);
+        hostGroups.setParameter(query);
+        setFiltersValues(query, pager.getFilter().getItems());
+
+        return (Long) query.getSingleResult();
+    }
+
+    /**
+     * Count the matching entries, but stop counting once {@code maxCount} entries have been found. This
+     * bounds the cost of the count for policies with a huge history.
+     *
+     * @return The number of entries, or {@code maxCount} if there are at least that many
+     */
+    public long countUpTo(String orgId, List<UUID> hostGroupIds, UUID policyId, Pager pager, int maxCount) {
+        return countUpTo(orgId, HostGroupsCondition.of(hostGroupIds), policyId, pager, maxCount);
+    }
+
+    private long countUpTo(String orgId, HostGroupsCondition hostGroups, UUID policyId, Pager pager, int maxCount) {
+        String sql = getTemplate(List.of("countUpTo", hostGroups.getSql(), getFiltersShape(pager)), () -> {
+            // Base SQL query.
+            String template = String.format("SELECT 1 FROM %s WHERE org_id = :orgId AND policy_id = :policyId",
+                                            tableName);
+
+            template += hostGroups.getSql();
+            template = addFiltersConditions(template, pager.getFilter().getItems());
+            return "SELECT COUNT(*) AS count FROM (" + template + " LIMIT :maxCount) AS capped";
+        });
+
+        Log.tracef("SQL query ready to be executed: %s", sql);
+
+        NativeQuery<?> query = session.createNativeQuery(sql)
+                .addScalar("count", Long.class)
+                .setParameter("orgId", orgId)
+                .setParameter("policyId", policyId.toString())
+                .setParameter("maxCount", maxCount);
+
+        hostGroups.setParameter(query);
         setFiltersValues(query, pager.getFilter().getItems());
 
         return (Long) query.getSingleResult();
     }
 
+    /**
+     * Offset paging of the history which honors the count mode of the pager: {@link CountMode#ESTIMATE} stops
+     * counting at {@link CountMode#ESTIMATE_LIMIT} and {@link CountMode#NONE} does not count at all, but reads
+     * one more entry than requested to tell if there is a next page.
+     */
+    public Page<PoliciesHistoryEntry> findPage(String orgId, List<UUID> hostGroupIds, UUID policyId, Pager pager) {
+        return findPage(orgId, HostGroupsCondition.of(hostGroupIds), policyId, pager, ENTRIES);
+    }
+
+    /**
+     * Same as {@link #findPage}, but only reads the columns of the {@link HistoryItem}s.
+     */
+    public Page<HistoryItem> findItemsPage(String orgId, List<UUID> hostGroupIds, UUID policyId, Pager pager) {
+        return toItemsPage(findPage(orgId, HostGroupsCondition.of(hostGroupIds), policyId, pager, ITEMS));
+    }
+
+    private <T> Page<T> findPage(String orgId, HostGroupsCondition hostGroups, UUID policyId, Pager pager, Projection<T> projection) {
+        CountMode countMode = pager.getCountMode();
+        switch (countMode) {
+            case NONE:
+                List<T> entries = find(orgId, hostGroups, policyId, pager, true, projection);
+                boolean hasMore = pager.getLimit() > 0 && entries.size() > pager.getLimit();
+                if (hasMore) {
+                    entries = entries.subList(0, pager.getLimit());
+                }
+                return new Page<>(entries, pager, Page.UNKNOWN_COUNT, countMode, null, hasMore);
+            case ESTIMATE:
+                long totalCount = countUpTo(orgId, hostGroups, policyId, pager, CountMode.ESTIMATE_LIMIT);
+                List<T> items = totalCount > 0 ? find(orgId, hostGroups, policyId, pager, false, projection) : new ArrayList<>();
+                return new Page<>(items, pager, totalCount, countMode, null, Page.hasMore(pager, totalCount, countMode));
+            default:
+                long count = count(orgId, hostGroups, policyId, pager);
+                return new Page<>(count > 0 ? find(orgId, hostGroups, policyId, pager, false, projection) : new ArrayList<>(), pager, count);
+        }
+    }
+
     public List<PoliciesHistoryEntry> find(String orgId,  List<UUID> hostGroupIds, UUID policyId, Pager pager) {
-        // Base SQL query.
-        String sql = String.format("SELECT * FROM %s WHERE org_id = :orgId AND policy_id = :policyId",
-                                   tableName);
-
-        sql = addHostGroupsConditions(sql, hostGroupIds);
-        sql = addFiltersConditions(sql, pager.getFilter().getItems());
-
-        // The sorts from the pager are added to the HQL query.
-        if (!pager.getSort().getColumns().isEmpty()) {
-            List<String> orderByItems = new ArrayList<>();
-            for (Sort.Column column : pager.getSort().getColumns()) {
-                getSortFieldName(column.getName()).ifPresent(entityFieldName -> {
-                    String sortDirection = getSortDirection(column.getDirection());
-                    orderByItems.add(entityFieldName + " " + sortDirection);
-                });
-            }
-            if (!orderByItems.isEmpty()) {
-                sql += " ORDER BY " + String.join(", ", orderByItems);
-            }
-        } else {
-            sql += " ORDER BY ctime DESC, host_name ASC";
+        return find(orgId, HostGroupsCondition.of(hostGroupIds), policyId, pager, false, ENTRIES);
+    }
+
+    /**
+     * Same as {@link #find}, but only reads the columns of the {@link HistoryItem}s.
+     */
+    public List<HistoryItem> findItems(String orgId,  List<UUID> hostGroupIds, UUID policyId, Pager pager) {
+        return toItems(find(orgId, HostGroupsCondition.of(hostGroupIds), policyId, pager, false, ITEMS));
+    }
+
+    private <T> List<T> find(String orgId, HostGroupsCondition hostGroups, UUID policyId, Pager pager, boolean lookAhead, Projection<T> projection) {
+        List<String> sortShape = new ArrayList<>();
+        for (Sort.Column column : pager.getSort().getColumns()) {
+            sortShape.add(column.getName() + " " + column.getDirection());
         }
 
+        String sql = getTemplate(List.of("find", projection.columns, hostGroups.getSql(), getFiltersShape(pager), sortShape), () -> {
+            // Base SQL query.
+            String template = String.format("SELECT %s FROM %s WHERE org_id = :orgId AND policy_id = :policyId",
+                                            projection.columns, tableName);
+
+            template += hostGroups.getSql();
+            template = addFiltersConditions(template, pager.getFilter().getItems());
+
+            // The sorts from the pager are added to the HQL query.
+            if (!pager.getSort().getColumns().isEmpty()) {
+                List<String> orderByItems = new ArrayList<>();
+                for (Sort.Column column : pager.getSort().getColumns()) {
+                    getSortFieldName(column.getName()).ifPresent(entityFieldName -> {
+                        String sortDirection = getSortDirection(column.getDirection());
+                        orderByItems.add(entityFieldName + " " + sortDirection);
+                    });
+                }
+                if (!orderByItems.isEmpty()) {
+                    template += " ORDER BY " + String.join(", ", orderByItems);
+                }
+            } else {
+                template += " ORDER BY ctime DESC, host_name ASC";
+            }
+            return template;
+        });
+
         Log.tracef("SQL query ready to be executed: %s", sql);
 
-        NativeQuery<PoliciesHistoryEntry> query = session
-                .createNativeQuery(sql, PoliciesHistoryEntry.class)
+        NativeQuery<T> query = projection.createQuery(session, sql)
                 .setParameter("orgId", orgId)
                 .setParameter("policyId", policyId.toString());
 
-        setHostGroupsValues(query, hostGroupIds);
+        hostGroups.setParameter(query);
         setFiltersValues(query, pager.getFilter().getItems());
 
         if (pager.getLimit() > 0) {
-            query.setMaxResults(pager.getLimit());
+            query.setMaxResults(lookAhead ? pager.getLimit() + 1 : pager.getLimit());
         }
         if (pager.getOffset() > 0) {
             query.setFirstResult(pager.getOffset());
@@ -96,38 +275,140 @@ public class PoliciesHistoryRepository {
         return query.getResultList();
     }
 
-    private static String addHostGroupsConditions(String sql, List<UUID> hostGroupIds) {
-        if (hostGroupIds == null) {
-            return sql;
+    /**
+     * Keyset paging of the history: the page starts right after the (ctime, id) stored in the cursor
+     * of the pager, so that deep pages are a bounded range scan on the (org_id, policy_id, ctime, id)
+     * index instead of reading and discarding all preceding rows.
+     * Filters are applied like in {@link #find}, sorting is only possible by ctime. The total count
+     * is determined according to the count mode of the pager, see {@link #findPage}.
+     *
+     * @return The page of entries, with the cursor of the next page if there is one
+     */
+    public Page<PoliciesHistoryEntry> seek(String orgId, List<UUID> hostGroupIds, UUID policyId, Pager pager) {
+        return seek(orgId, HostGroupsCondition.of(hostGroupIds), policyId, pager, ENTRIES);
+    }
+
+    /**
+     * Same as {@link #seek}, but only reads the columns of the {@link HistoryItem}s.
+     */
+    public Page<HistoryItem> seekItems(String orgId, List<UUID> hostGroupIds, UUID policyId, Pager pager) {
+        return toItemsPage(seek(orgId, HostGroupsCondition.of(hostGroupIds), policyId, pager, ITEMS));
+    }
+
+    private <T> Page<T> seek(String orgId, HostGroupsCondition hostGroups, UUID policyId, Pager pager, Projection<T> projection) {
+        Sort.Direction direction = getSeekDirection(pager);
+        Cursor cursor = pager.getCursor();
+        if (cursor != null && (!cursor.getColumn().equals("ctime") || cursor.getDirection() != direction)) {
+            throw new IllegalArgumentException("Cursor does not match the requested sort");
         }
 
-        List<String> conds = new ArrayList<String>();
-        conds.add("1=0");
-        int num = 0;
-        for (UUID hostGroupId : hostGroupIds) {
-            if (hostGroupId == null) {
-                conds.add("host_groups = '[]'");
-            } else {
-                num++;
-                conds.add(String.format("host_groups @> CAST(:hostGroup%d AS jsonb)", num));
+        String sql = getTemplate(List.of("seek", projection.columns, hostGroups.getSql(), getFiltersShape(pager), direction, cursor != null), () -> {
+            // Base SQL query.
+            String template = String.format("SELECT %s FROM %s WHERE org_id = :orgId AND policy_id = :policyId",
+                                            projection.columns, tableName);
+
+            template += hostGroups.getSql();
+            template = addFiltersConditions(template, pager.getFilter().getItems());
+
+            String sortDirection = getSortDirection(direction);
+            if (cursor != null) {
+                String operator = direction == Sort.Direction.Ascending ? ">" : "<";
+                template += " AND (ctime, id) " + operator + " (:cursorCtime, :cursorId)";
             }
+            return template + " ORDER BY ctime " + sortDirection + ", id " + sortDirection;
+        });
+
+        Log.tracef("SQL query ready to be executed: %s", sql);
+
+        NativeQuery<T> query = projection.createQuery(session, sql)
+                .setParameter("orgId", orgId)
+                .setParameter("policyId", policyId.toString());
+
+        hostGroups.setParameter(query);
+        setFiltersValues(query, pager.getFilter().getItems());
+
+        if (cursor != null) {
+            query.setParameter("cursorCtime", Long.parseLong(cursor.getValue()));
+            query.setParameter("cursorId", cursor.getId());
+        }
+        if (pager.getLimit() > 0) {
+            // One more than requested tells us if there is a next page
+            query.setMaxResults(pager.getLimit() + 1);
+        }
+
+        List<T> entries = query.getResultList();
+        Cursor nextCursor = null;
+        if (pager.getLimit() > 0 && entries.size() > pager.getLimit()) {
+            entries = entries.subList(0, pager.getLimit());
+            T last = entries.get(entries.size() - 1);
+            nextCursor = new Cursor("ctime", direction, Long.toString(projection.getCtime(last)), projection.getId(last));
+        }
+
+        long totalCount;
+        switch (pager.getCountMode()) {
+            case NONE:
+                totalCount = Page.UNKNOWN_COUNT;
+                break;
+            case ESTIMATE:
+                totalCount = countUpTo(orgId, hostGroups, policyId, pager, CountMode.ESTIMATE_LIMIT);
+                break;
+            default:
+                totalCount = count(orgId, hostGroups, policyId, pager);
+        }
+        return new Page<>(entries, pager, totalCount, pager.getCountMode(), nextCursor, nextCursor != null);
+    }
+
+    private static List<HistoryItem> toItems(List<ItemRow> rows) {
+        List<HistoryItem> items = new ArrayList<>(rows.size());
+        for (ItemRow row : rows) {
+            items.add(row.item);
         }
-        return String.format("%s AND (%s)", sql, String.join(" OR ", conds));
+        return items;
+    }
+
+    private static Page<HistoryItem> toItemsPage(Page<ItemRow> rows) {
+        return new Page<>(toItems(rows), rows.getPager(), rows.getTotalCount(), rows.getCountMode(),
+                rows.getNextCursor(), rows.hasMore());
     }
 
-    private static void setHostGroupsValues(Query query, List<UUID> hostGroupIds) {
-        if (hostGroupIds == null) {
-            return;
+    private static Sort.Direction getSeekDirection(Pager pager) {
+        Sort.Direction direction = Sort.Direction.Descending;
+        int sortColumns = 0;
+        for (Sort.Column column : pager.getSort().getColumns()) {
+            if (column.getName().equals("mtime")) {
+                // Pager may contain a default sort on `mtime` which is not a PoliciesHistoryEntry field.
+                continue;
+            }
+            if (!column.getName().equals("ctime") || ++sortColumns > 1) {
+                throw new IllegalArgumentException("Cursor paging of the history only supports sorting by ctime");
+            }
+            direction = column.getDirection();
         }
+        return direction;
+    }
 
-        int num = 0;
-        for (UUID hostGroupId : hostGroupIds) {
-            if (hostGroupId != null) {
-                num++;
-                JsonArray value = JsonArray.of(JsonObject.of("id", hostGroupId.toString()));
-                query.setParameter(String.format("hostGroup%d", num), value.toString());
+    private String getTemplate(List<Object> shape, Supplier<String> builder) {
+        String template = templates.get(shape);
+        if (template == null) {
+            template = builder.get();
+            if (templates.size() < MAX_TEMPLATES) {
+                templates.putIfAbsent(shape, template);
             }
         }
+        return template;
+    }
+
+    int getTemplateCount() {
+        return templates.size();
+    }
+
+    private static List<String> getFiltersShape(Pager pager) {
+        List<String> shape = new ArrayList<>();
+        for (Filter.FilterItem filterItem : pager.getFilter().getItems()) {
+            // Also whitelists the fields and operators before they become part of a cache key
+            shape.add(getFieldName(filterItem) + getOperator(filterItem));
+        }
+        return shape;
     }
 
     private static String addFiltersConditions(String sql, List<Filter.FilterItem> filterItems) {
@@ -136,6 +417,7 @@ public class PoliciesHistoryRepository {
             String fieldName = getFieldName(filterItem);
             String operator = getOperator(filterItem);
             // To be consistent with the previous implementation, the condition is always case-insensitive.
+            // LOWER(host_name) matches the trigram index of V29, keep both in sync.
             sql += " AND LOWER(" + fieldName + ")" + operator + ":" + fieldName;
         }
         return sql;
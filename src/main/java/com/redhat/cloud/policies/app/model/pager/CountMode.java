@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.cloud.policies.app.model.pager;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * How the total number of items of a paged result is determined.
+ */
+public enum CountMode {
+
+    /**
+     * Count all matching items.
+     */
+    EXACT,
+    /**
+     * Count up to {@link #ESTIMATE_LIMIT} items. A count equal to the limit means "at least that many".
+     */
+    ESTIMATE,
+    /**
+     * Don't count at all, only tell if there are more items after the page.
+     */
+    NONE;
+
+    public static final int ESTIMATE_LIMIT = 10000;
+
+    public static CountMode fromName(String name) {
+        final String upperCaseName = name.toUpperCase();
+        Optional<CountMode> result = Arrays.stream(CountMode.values())
+                .filter(val -> val.name().equals(upperCaseName))
+                .findAny();
+        if (result.isPresent()) {
+            return result.get();
+        }
+        throw new IllegalArgumentException("Unknown count mode requested: [" + name + "]");
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.cloud.policies.app.model.pager;
+
+import io.quarkus.panache.common.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Position of the last item of a page for keyset (seek) paging.
+ * <p>
+ * The cursor remembers the sort column and direction, the sort key of the
+ * last returned item and its id as a tie-breaker. Clients only ever see the
+ * encoded form, which is opaque to them.
+ */
+public class Cursor {
+
+    private static final String SEPARATOR = "|";
+    private static final String ASCENDING = "A";
+    private static final String DESCENDING = "D";
+
+    private final String column;
+    private final Sort.Direction direction;
+    private final String value;
+    private final UUID id;
+
+    public Cursor(String column, Sort.Direction direction, String value, UUID id) {
+        this.column = column;
+        this.direction = direction;
+        this.value = value;
+        this.id = id;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public Sort.Direction getDirection() {
+        return direction;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public String encode() {
+        // The value goes last, so that it may contain the separator
+        String raw = column + SEPARATOR
+                + (direction == Sort.Direction.Descending ? DESCENDING : ASCENDING) + SEPARATOR
+                + id + SEPARATOR
+                + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor as obtained from {@link #encode()}.
+     *
+     * @param encoded Cursor string as passed by the client
+     * @return The decoded cursor or null if the string is empty, which denotes the first page
+     * @throws IllegalArgumentException if the cursor can not be decoded
+     */
+    public static Cursor decode(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return null;
+        }
+
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR, 4);
+            if (parts.length != 4 || parts[0].isEmpty()) {
+                throw new IllegalArgumentException("Invalid cursor [" + encoded + "]");
+            }
+            Sort.Direction direction;
+            switch (parts[1]) {
+                case ASCENDING:
+                    direction = Sort.Direction.Ascending;
+                    break;
+                case DESCENDING:
+                    direction = Sort.Direction.Descending;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid cursor [" + encoded + "]");
+            }
+            return new Cursor(parts[0], direction, parts[3], UUID.fromString(parts[2]));
+        } catch (IllegalArgumentException iae) {
+            // Base64 and UUID parsing failures end up here as well
+            throw new IllegalArgumentException("Invalid cursor [" + encoded + "]", iae);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Cursor cursor = (Cursor) o;
+        return column.equals(cursor.column) &&
+                direction == cursor.direction &&
+                Objects.equals(value, cursor.value) &&
+                id.equals(cursor.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(column, direction, value, id);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("Cursor{");
+        sb.append("column='").append(column).append('\'');
+        sb.append(", direction=").append(direction);
+        sb.append(", value='").append(value).append('\'');
+        sb.append(", id=").append(id);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -27,24 +27,83 @@ public class Page<T> implements List<T> {
     public static final String C_REMOVE = "remove";
     public static final String C_ADD_ALL = "addAll";
     public static final String C_ADD = "add";
+    /**
+     * Total count of a page for which the items were not counted.
+     */
+    public static final long UNKNOWN_COUNT = -1;
+
     private final List<T> wrapped;
     private final Pager pager;
     private final long totalCount;
+    private final CountMode countMode;
+    private final Cursor nextCursor;
+    private final boolean hasMore;
 
     public Page(List<T> wrapped, Pager pager, long totalCount) {
+        this(wrapped, pager, totalCount, null);
+    }
+
+    public Page(List<T> wrapped, Pager pager, long totalCount, Cursor nextCursor) {
+        this(wrapped, pager, totalCount, CountMode.EXACT, nextCursor,
+                pager.isKeysetPaging() ? nextCursor != null : hasMore(pager, totalCount, CountMode.EXACT));
+    }
+
+    public Page(List<T> wrapped, Pager pager, long totalCount, CountMode countMode, Cursor nextCursor, boolean hasMore) {
         this.wrapped = wrapped;
         this.pager = pager;
         this.totalCount = totalCount;
+        this.countMode = countMode;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * Tells if there are items after an offset based page, judging from the (possibly estimated) total count.
+     */
+    public static boolean hasMore(Pager pager, long totalCount, CountMode countMode) {
+        if (pager.getLimit() == Pager.NO_LIMIT) {
+            return false;
+        }
+        return pager.getOffset() + pager.getLimit() < totalCount || isCapped(totalCount, countMode);
+    }
+
+    private static boolean isCapped(long totalCount, CountMode countMode) {
+        return countMode == CountMode.ESTIMATE && totalCount >= CountMode.ESTIMATE_LIMIT;
     }
 
     public Pager getPager() {
         return pager;
     }
 
+    /**
+     * Total number of items, {@link #UNKNOWN_COUNT} if they were not counted.
+     */
     public long getTotalCount() {
         return totalCount;
     }
 
+    public CountMode getCountMode() {
+        return countMode;
+    }
+
+    /**
+     * True if the total count is only a lower bound, as the estimation stopped counting.
+     */
+    public boolean isCountCapped() {
+        return isCapped(totalCount, countMode);
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    /**
+     * Cursor to the page following this one when keyset paging is used, null if there is none.
+     */
+    public Cursor getNextCursor() {
+        return nextCursor;
+    }
+
     @Override
     public int size() {
         return wrapped.size();
@@ -176,7 +235,7 @@ public class Page<T> implements List<T> {
     @Override
     @NotNull
     public List<T> subList(int i, int j) {
-        return new Page<>(wrapped.subList(i, j), pager, totalCount);
+        return new Page<>(wrapped.subList(i, j), pager, totalCount, countMode, nextCursor, hasMore);
     }
 
     class WrapperListIterator<T> implements ListIterator<T> {
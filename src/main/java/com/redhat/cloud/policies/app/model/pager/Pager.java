@@ -29,12 +29,26 @@ public class Pager {
     @Nullable
     private final Sort sort;
     private final Filter filter;
+    private final boolean keysetPaging;
+    @Nullable
+    private final Cursor cursor;
+    private final CountMode countMode;
+    private final String filterParameters;
 
     public Pager(int offset, int limit, Filter filter, Sort sort) {
+        this(offset, limit, filter, sort, false, null, CountMode.EXACT, "");
+    }
+
+    public Pager(int offset, int limit, Filter filter, Sort sort, boolean keysetPaging, Cursor cursor, CountMode countMode,
+                 String filterParameters) {
         this.offset = offset;
         this.limit = limit;
         this.filter = filter;
         this.sort = sort;
+        this.keysetPaging = keysetPaging;
+        this.cursor = cursor;
+        this.countMode = countMode;
+        this.filterParameters = filterParameters;
     }
 
     public int getOffset() {
@@ -53,6 +67,35 @@ public class Pager {
         return sort;
     }
 
+    /**
+     * If true, pages are selected by the {@link #getCursor() cursor} and the offset is ignored.
+     */
+    public boolean isKeysetPaging() {
+        return keysetPaging;
+    }
+
+    /**
+     * Position after which the page starts. Null for the first page of keyset paging.
+     */
+    public Cursor getCursor() {
+        return cursor;
+    }
+
+    /**
+     * How the client wants the total number of items to be determined. Not every query honors this.
+     */
+    public CountMode getCountMode() {
+        return countMode;
+    }
+
+    /**
+     * The filter query parameters of the request, URL encoded and each starting with {@code &}, e.g.
+     * {@code &filter%5Bname%5D=foo}. Empty if there are none.
+     */
+    public String getFilterParameters() {
+        return filterParameters;
+    }
+
     public static PagerBuilder builder() {
         return new PagerBuilder();
     }
@@ -63,12 +106,19 @@ public class Pager {
         private int limit;
         private final Sort sort;
         private final Filter filter;
+        private boolean keysetPaging;
+        private Cursor cursor;
+        private CountMode countMode;
+        private String filterParameters;
 
         private PagerBuilder() {
             this.offset = 0;
             this.limit = 50;
             this.sort = Sort.by();
             this.filter = new Filter();
+            this.keysetPaging = false;
+            this.countMode = CountMode.EXACT;
+            this.filterParameters = "";
         }
 
         public PagerBuilder page(int offset) {
@@ -86,6 +136,22 @@ public class Pager {
             return this;
         }
 
+        public PagerBuilder keysetPaging(Cursor cursor) {
+            this.keysetPaging = true;
+            this.cursor = cursor;
+            return this;
+        }
+
+        public PagerBuilder countMode(CountMode countMode) {
+            this.countMode = countMode;
+            return this;
+        }
+
+        public PagerBuilder filterParameters(String filterParameters) {
+            this.filterParameters = filterParameters;
+            return this;
+        }
+
         public PagerBuilder filter(String column, Filter.Operator operator, String value) {
             Object transformedValue = value;
             if (operator.equals(Filter.Operator.BOOLEAN_IS)) {
@@ -99,7 +165,8 @@ public class Pager {
 
         public Pager build() {
             Filter filter = new Filter(this.filter);
-            return new Pager(this.offset, this.limit, filter, this.sort);
+            return new Pager(this.offset, this.limit, filter, this.sort, this.keysetPaging, this.cursor, this.countMode,
+                    this.filterParameters);
         }
 
     }
@@ -17,6 +17,7 @@
 package com.redhat.cloud.policies.app.rest;
 
 import com.redhat.cloud.policies.app.StuffHolder;
+import com.redhat.cloud.policies.app.auth.RbacCache;
 import com.redhat.cloud.policies.app.health.ScheduledStatusProducer;
 import com.redhat.cloud.policies.app.model.Msg;
 import com.redhat.cloud.policies.app.model.Policy;
@@ -27,9 +28,11 @@ import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
 import jakarta.persistence.EntityManager;
 import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.Response;
@@ -53,6 +56,9 @@ public class AdminService {
     @Inject
     ScheduledStatusProducer statusProducer;
 
+    @Inject
+    RbacCache rbacCache;
+
     @ConfigProperty(name = "stats.filter.cid")
     Optional<String> filterIdsString;
 
@@ -112,6 +118,19 @@ public class AdminService {
         return builder.build();
     }
 
+    /**
+     * Drop the cached RBAC permissions of all users of an org, so that
+     * changes done in RBAC apply right away and not only after the TTL.
+     */
+    @Path("/rbac-cache/{orgId}")
+    @DELETE
+    public Response invalidateRbacCache(@PathParam("orgId") String orgId) {
+        int count = rbacCache.invalidateOrg(orgId);
+        return Response.ok()
+                .entity(new Msg("Dropped cached permissions of " + count + " users"))
+                .build();
+    }
+
     @Path("/stats")
     @GET
     public Response getStats() {
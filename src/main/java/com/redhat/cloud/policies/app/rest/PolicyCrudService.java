@@ -16,11 +16,14 @@
  */
 package com.redhat.cloud.policies.app.rest;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.redhat.cloud.policies.app.lightweight.ConditionValidator;
 import com.redhat.cloud.policies.app.lightweight.OrgIdLatestUpdateRepository;
-import com.redhat.cloud.policies.app.lightweight.LightweightEngine;
 import com.redhat.cloud.policies.app.auth.RhIdPrincipal;
+import com.redhat.cloud.policies.app.model.BatchItemResult;
 import com.redhat.cloud.policies.app.model.ColumnGetter;
 import com.redhat.cloud.policies.app.model.Msg;
 import com.redhat.cloud.policies.app.model.Policy;
@@ -28,11 +31,16 @@ import com.redhat.cloud.policies.app.model.UUIDHelperBean;
 import com.redhat.cloud.policies.app.model.engine.HistoryItem;
 import com.redhat.cloud.policies.app.model.history.PoliciesHistoryEntry;
 import com.redhat.cloud.policies.app.model.history.PoliciesHistoryRepository;
+import com.redhat.cloud.policies.app.model.pager.CountMode;
 import com.redhat.cloud.policies.app.model.pager.Page;
 import com.redhat.cloud.policies.app.model.pager.Pager;
 import com.redhat.cloud.policies.app.rest.utils.PagingUtils;
 import io.micrometer.core.annotation.Timed;
 import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.eclipse.microprofile.faulttolerance.exceptions.FaultToleranceException;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.enums.ParameterIn;
 import org.eclipse.microprofile.openapi.annotations.enums.SchemaType;
@@ -44,18 +52,20 @@ import org.eclipse.microprofile.openapi.annotations.parameters.Parameters;
 import org.eclipse.microprofile.openapi.annotations.parameters.RequestBody;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
-import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
 import org.hibernate.exception.ConstraintViolationException;
 
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
 import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceException;
 import jakarta.transaction.SystemException;
 import jakarta.transaction.TransactionManager;
 import jakarta.transaction.Transactional;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.ValidationException;
 import jakarta.validation.Validator;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
@@ -71,17 +81,27 @@ import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.ResponseBuilder;
+import jakarta.ws.rs.core.StreamingOutput;
 import jakarta.ws.rs.core.UriBuilder;
 import jakarta.ws.rs.core.UriInfo;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.ConnectException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 
 @Path("/api/policies/v1.0/policies")
@@ -95,12 +115,15 @@ public class PolicyCrudService {
     public static final String MISSING_PERMISSIONS_TO_VERIFY_POLICY = "Missing permissions to verify policy";
     public static final String MISSING_PERMISSIONS_TO_UPDATE_POLICY = "Missing permissions to update policy";
 
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+    static final int MAX_BATCH_SIZE = 1000;
+    private static final int EXPORT_FETCH_SIZE = 500;
+
     public static final String ERROR_STRING = "error";
     public static final String CTIME_STRING = "ctime";
 
     @Inject
-    @RestClient
-    LightweightEngine lightweightEngine;
+    ConditionValidator conditionValidator;
 
     @Inject
     OrgIdLatestUpdateRepository orgIdLatestUpdateRepository;
@@ -130,6 +153,15 @@ public class PolicyCrudService {
     @Inject
     ObjectMapper objectMapper;
 
+    @Inject
+    ManagedExecutor executor;
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    @ConfigProperty(name = "policies.batch.validation-concurrency", defaultValue = "8")
+    int batchValidationConcurrency;
+
     // workaround for returning generic types: https://github.com/swagger-api/swagger-core/issues/498#issuecomment-74510379
     // This class is used only for swagger return type
     private static class PagedResponseOfPolicy extends PagingUtils.PagedResponse<Policy> {
@@ -154,6 +186,13 @@ public class PolicyCrudService {
                     description = "Number of items per page, if not specified uses 50. " + Pager.NO_LIMIT + " can be used to specify an unlimited page, when specified it ignores the offset",
                     schema = @Schema(type = SchemaType.INTEGER)
             ),
+            @Parameter(
+                    name = "cursor",
+                    in = ParameterIn.QUERY,
+                    description = "Switches to cursor based paging, which ignores the offset. Pass an empty value for the " +
+                            "first page and then follow the 'next' link. Sorting by description is not supported in this mode.",
+                    schema = @Schema(type = SchemaType.STRING)
+            ),
             @Parameter(
                     name = "sortColumn",
                     in = ParameterIn.QUERY,
@@ -255,6 +294,39 @@ public class PolicyCrudService {
         return PagingUtils.responseBuilder(page).build();
     }
 
+    @Operation(summary = "Export all policies for a customer as newline delimited JSON, one policy per line")
+    @GET
+    @Path("/export")
+    @Produces(APPLICATION_NDJSON)
+    @APIResponse(responseCode = "403", description = "Individual permissions missing to complete action")
+    @APIResponse(responseCode = "200", description = "Policies exported", content =
+    @Content(mediaType = APPLICATION_NDJSON, schema = @Schema(implementation = Policy.class)))
+    public Response exportPolicies() {
+
+        if (!user.canReadPolicies()) {
+            return Response.status(Response.Status.FORBIDDEN).entity(new Msg(MISSING_PERMISSIONS_TO_RETRIEVE_POLICIES)).build();
+        }
+
+        String orgId = user.getOrgId();
+        // Rows are written as they are read from the database, nothing is collected in memory
+        StreamingOutput output = out -> QuarkusTransaction.requiringNew().run(() -> {
+            try (StatelessSession session = sessionFactory.openStatelessSession();
+                 ScrollableResults<Policy> policies = Policy.scrollPoliciesForCustomer(session, orgId, EXPORT_FETCH_SIZE);
+                 JsonGenerator generator = objectMapper.createGenerator(out)) {
+                // The container owns the response stream
+                generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+                while (policies.next()) {
+                    generator.writeObject(policies.get());
+                    generator.writeRaw('\n');
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        return Response.ok(output).build();
+    }
+
     @Operation(summary = "Return all policy ids for a given account after applying the filters")
     @GET
     @Path("/ids")
@@ -367,7 +439,7 @@ public class PolicyCrudService {
         }
 
         try {
-            lightweightEngine.validateCondition(policy.conditions);
+            conditionValidator.validateCondition(policy.conditions);
         } catch (Exception e) {
             return Response.status(400, e.getMessage()).entity(getEngineExceptionMsg(e)).build();
         }
@@ -389,8 +461,169 @@ public class PolicyCrudService {
         return Response.created(location).entity(policy).build();
     }
 
+    @Operation(summary = "Validate and persist many policies for the given account at once. " +
+            "Result will be a list with the outcome for each policy, in the order they were passed")
+    @RequestBody(content = {
+            @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(type = SchemaType.ARRAY, implementation = Policy.class)),
+            @Content(mediaType = APPLICATION_NDJSON, schema = @Schema(implementation = Policy.class))
+    })
+    @APIResponses({
+            @APIResponse(responseCode = "400", description = "No policies provided, too many policies or body not readable",
+                    content = @Content(schema = @Schema(implementation = Msg.class))),
+            @APIResponse(responseCode = "403", description = "Individual permissions missing to complete action"),
+            @APIResponse(responseCode = "200", description = "Policies processed, see the status of each item",
+                    content = @Content(schema = @Schema(type = SchemaType.ARRAY, implementation = BatchItemResult.class)))
+    })
+    @POST
+    @Path("/batch")
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_NDJSON})
+    public Response storePolicies(InputStream body) {
+
+        if (!user.canWritePolicies()) {
+            return Response.status(Response.Status.FORBIDDEN).entity(new Msg("Missing permissions to store policy")).build();
+        }
+
+        // A JSON array and a stream of JSON objects are both read one policy at a time
+        List<Policy> policies = new ArrayList<>();
+        try (MappingIterator<Policy> iterator = objectMapper.readerFor(Policy.class).readValues(body)) {
+            while (iterator.hasNext()) {
+                if (policies.size() == MAX_BATCH_SIZE) {
+                    return Response.status(400).entity(new Msg("A batch may hold at most " + MAX_BATCH_SIZE + " policies")).build();
+                }
+                policies.add(iterator.next());
+            }
+        } catch (IOException | RuntimeException e) {
+            return Response.status(400).entity(new Msg("Reading the policies failed: " + e.getMessage())).build();
+        }
+        if (policies.isEmpty()) {
+            return Response.status(400).entity(new Msg("No policies provided")).build();
+        }
+
+        List<BatchItemResult> results = new ArrayList<>(policies.size());
+        Set<String> names = new HashSet<>();
+        List<CompletableFuture<Void>> validations = new ArrayList<>();
+        Semaphore validationSlots = new Semaphore(batchValidationConcurrency);
+        for (int i = 0; i < policies.size(); i++) {
+            Policy policy = policies.get(i);
+            policy.id = uuidHelper.getUUID();
+            policy.customerid = user.getAccount();
+            policy.orgId = user.getOrgId();
+
+            BatchItemResult result = new BatchItemResult(i, policy.name);
+            results.add(result);
+
+            Set<ConstraintViolation<Policy>> violations = validator.validate(policy);
+            if (!violations.isEmpty()) {
+                String error = String.join(
+                        ";",
+                        violations.stream().map(v -> v.getPropertyPath() + " " + v.getMessage()).collect(Collectors.toSet())
+                );
+                result.failed(400, error);
+                continue;
+            }
+            if (!names.add(policy.name)) {
+                result.failed(409, "Policy name is not unique");
+                continue;
+            }
+
+            // Only the conditions the local parser can not decide on need the engine
+            try {
+                if (conditionValidator.validateLocally(policy.conditions)) {
+                    continue;
+                }
+            } catch (ValidationException e) {
+                result.failed(400, e.getMessage());
+                continue;
+            }
+
+            // The engine calls run concurrently, but only so many at a time so that the engine is not flooded
+            validationSlots.acquireUninterruptibly();
+            validations.add(CompletableFuture
+                    .runAsync(() -> conditionValidator.validateRemotely(policy.conditions), executor)
+                    .handle((ignored, t) -> {
+                        validationSlots.release();
+                        if (t != null) {
+                            Throwable cause = t instanceof CompletionException ? t.getCause() : t;
+                            String error = cause instanceof Exception ? getEngineExceptionMsg((Exception) cause).msg : cause.getMessage();
+                            result.failed(400, error);
+                        }
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(validations.toArray(new CompletableFuture[0])).join();
+
+        List<Integer> valid = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            if (!results.get(i).isFailed()) {
+                valid.add(i);
+            }
+        }
+
+        // The engine calls are done, so the transaction and its connection only last for the inserts
+        List<Integer> stored;
+        try {
+            stored = QuarkusTransaction.requiringNew().call(() -> persistPolicies(policies, results, valid));
+        } catch (RuntimeException e) {
+            if (!isConstraintViolation(e)) {
+                throw e;
+            }
+            // A policy was stored under one of the names after they were checked. Storing the policies
+            // one at a time tells which ones collide.
+            stored = new ArrayList<>();
+            for (int i : valid) {
+                BatchItemResult result = results.get(i);
+                if (result.isFailed()) {
+                    continue;
+                }
+                try {
+                    stored.addAll(QuarkusTransaction.requiringNew().call(() -> persistPolicies(policies, results, List.of(i))));
+                } catch (RuntimeException t) {
+                    Response response = getResponseSavingPolicyThrowable(t);
+                    result.failed(response.getStatus(), response.getStatus() == 409 ? "Policy name is not unique" : t.getMessage());
+                }
+            }
+        }
+        for (int i : stored) {
+            results.get(i).created(policies.get(i).id);
+        }
+
+        return Response.ok(results).build();
+    }
+
+    /*
+     * Stores the policies at the given positions of the batch, in the current transaction. Policies whose name
+     * is already taken get a 409.
+     *
+     * Returns the positions of the stored policies.
+     */
+    private List<Integer> persistPolicies(List<Policy> policies, List<BatchItemResult> results, List<Integer> indexes) {
+        Set<String> names = new HashSet<>();
+        for (int i : indexes) {
+            names.add(policies.get(i).name);
+        }
+        Set<String> existingNames = Policy.findExistingNames(entityManager, user.getOrgId(), names);
+
+        List<Integer> stored = new ArrayList<>();
+        for (int i : indexes) {
+            Policy policy = policies.get(i);
+            if (existingNames.contains(policy.name)) {
+                results.get(i).failed(409, "Policy name is not unique");
+                continue;
+            }
+            // The inserts go out in JDBC batches when the transaction is flushed
+            policy.persist();
+            stored.add(i);
+        }
+        if (!stored.isEmpty()) {
+            // A name taken in the meantime fails here and not at the commit, see storePolicies
+            entityManager.flush();
+            setLatestToNow();
+        }
+        return stored;
+    }
+
     private Response getResponseSavingPolicyThrowable(Throwable t) {
-        if (t instanceof PersistenceException && t.getCause() instanceof ConstraintViolationException) {
+        if (isConstraintViolation(t)) {
             return Response.status(409, t.getMessage()).entity(new Msg("Constraint violation")).build();
         } else {
             Log.warn("Getting response failed", t);
@@ -398,10 +631,22 @@ public class PolicyCrudService {
         }
     }
 
+    // The violation may be wrapped, e.g. by JPA or by the transaction
+    private static boolean isConstraintViolation(Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private Msg getEngineExceptionMsg(Exception e) {
         Msg msg;
+        // FaultToleranceException: the circuit breaker is open or the bulkhead is full
         if (e instanceof RuntimeException && e.getCause() instanceof ConnectException
-                || e instanceof ProcessingException) {
+                || e instanceof ProcessingException
+                || e instanceof FaultToleranceException) {
             msg = new Msg("Connection to backend-engine failed. Please retry later");
         } else {
             msg = new Msg(e.getMessage());
@@ -434,7 +679,7 @@ public class PolicyCrudService {
         }
     }
 
-    @Operation(summary = "Delete policies for a customer by the ids passed in the body. Result will be a list of deleted UUIDs")
+    @Operation(summary = "Delete policies for a customer by the ids passed in the body. Result will be a list of the UUIDs that were deleted")
     @APIResponse(responseCode = "403", description = "Individual permissions missing to complete action")
     @APIResponse(responseCode = "200", description = "Policies deleted",
             content = @Content(schema = @Schema(type = SchemaType.ARRAY, implementation = UUID.class)))
@@ -447,18 +692,11 @@ public class PolicyCrudService {
             return Response.status(Response.Status.FORBIDDEN).entity(new Msg("Missing permissions to delete policy")).build();
         }
 
-        boolean dbUpdated = false;
-        for (UUID uuid : uuids) {
-            Policy policy = findPolicy(uuid);
-            if (policy != null) {
-                policy.delete();
-                dbUpdated = true;
-            }
-        }
-        if (dbUpdated) {
+        List<UUID> deleted = Policy.deleteByIds(entityManager, user.getOrgId(), uuids);
+        if (!deleted.isEmpty()) {
             setLatestToNow();
         }
-        return Response.ok(uuids).build();
+        return Response.ok(deleted).build();
     }
 
     @Operation(summary = "Enable/disable a policy")
@@ -508,16 +746,7 @@ public class PolicyCrudService {
             return Response.status(Response.Status.FORBIDDEN).entity(new Msg(MISSING_PERMISSIONS_TO_UPDATE_POLICY)).build();
         }
 
-        List<UUID> changed = new ArrayList<>(uuids.size());
-        for (UUID uuid : uuids) {
-            Policy storedPolicy = findPolicy(uuid);
-            if (storedPolicy != null) {
-                storedPolicy.isEnabled = shouldBeEnabled;
-                storedPolicy.setMtimeToNow();
-                storedPolicy.persist();
-                changed.add(uuid);
-            }
-        }
+        List<UUID> changed = Policy.setEnabledByIds(entityManager, user.getOrgId(), uuids, shouldBeEnabled);
         if (!changed.isEmpty()) {
             setLatestToNow();
         }
@@ -560,7 +789,7 @@ public class PolicyCrudService {
                 }
 
                 try {
-                    lightweightEngine.validateCondition(policy.conditions);
+                    conditionValidator.validateCondition(policy.conditions);
                 } catch (Exception e) {
                     return Response.status(400, e.getMessage()).entity(getEngineExceptionMsg(e)).build();
                 }
@@ -599,20 +828,22 @@ public class PolicyCrudService {
             @APIResponse(responseCode = "400", description = "No policy provided or condition not valid", content = @Content(schema = @Schema(implementation = Msg.class))),
             @APIResponse(responseCode = "500", description = "Internal error")
     })
-    public Response validateCondition(@Valid @NotNull Policy policy) {
+    public CompletionStage<Response> validateCondition(@Valid @NotNull Policy policy) {
 
         if (!user.canReadPolicies()) {
-            return Response.status(Response.Status.FORBIDDEN).entity(new Msg(MISSING_PERMISSIONS_TO_VERIFY_POLICY)).build();
+            return CompletableFuture.completedFuture(
+                    Response.status(Response.Status.FORBIDDEN).entity(new Msg(MISSING_PERMISSIONS_TO_VERIFY_POLICY)).build());
         }
 
-        try {
-            lightweightEngine.validateCondition(policy.conditions);
-        } catch (Exception e) {
-            return Response.status(400, e.getMessage()).entity(getEngineExceptionMsg(e)).build();
-        }
-
-        return Response.status(200).entity(new Msg("Policy.condition validated")).build();
-
+        // The worker thread is released while the engine validates the condition
+        return conditionValidator.validateConditionAsync(policy.conditions)
+                .map(ignored -> Response.status(200).entity(new Msg("Policy.condition validated")).build())
+                .onFailure().recoverWithItem(t -> {
+                    Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+                    Exception e = cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+                    return Response.status(400, e.getMessage()).entity(getEngineExceptionMsg(e)).build();
+                })
+                .subscribeAsCompletionStage();
     }
 
     @Operation(summary = "Validates the Policy.name and verifies if it is unique.")
@@ -720,6 +951,21 @@ public class PolicyCrudService {
                     description = "Number of items per page, if not specified uses 50. Maximum value is 200.",
                     schema = @Schema(type = SchemaType.INTEGER)
             ),
+            @Parameter(
+                    name = "cursor",
+                    in = ParameterIn.QUERY,
+                    description = "Switches to cursor based paging, which ignores the offset. Pass an empty value for the " +
+                            "first page and then follow the 'next' link. Only sorting by ctime is supported in this mode.",
+                    schema = @Schema(type = SchemaType.STRING)
+            ),
+            @Parameter(
+                    name = "count",
+                    in = ParameterIn.QUERY,
+                    description = "How the total count is determined: 'exact' (default), 'estimate' which stops counting " +
+                            "at 10000 and then reports '10000+' in the TotalCount header, or 'none' which skips the count. " +
+                            "The 'has_more' flag of the response meta tells if there are further pages.",
+                    schema = @Schema(type = SchemaType.STRING, enumeration = {"exact", "estimate", "none"})
+            ),
             @Parameter(
                     name = "filter[name]",
                     in = ParameterIn.QUERY,
@@ -817,21 +1063,27 @@ public class PolicyCrudService {
     }
 
     private ResponseBuilder buildHistoryResponse(UUID policyId, Pager pager) {
+        String location = "/api/policies/v1.0/policies/" + policyId + "/history/trigger";
+
+        if (pager.isKeysetPaging() || pager.getCountMode() != CountMode.EXACT) {
+            Page<HistoryItem> itemsPage = pager.isKeysetPaging()
+                    ? policiesHistoryRepository.seekItems(user.getOrgId(), user.getHostGroupIds(), policyId, pager)
+                    : policiesHistoryRepository.findItemsPage(user.getOrgId(), user.getHostGroupIds(), policyId, pager);
+            return PagingUtils.responseBuilder(itemsPage, location);
+        }
+
         List<HistoryItem> items;
 
         long totalCount = policiesHistoryRepository.count(user.getOrgId(), user.getHostGroupIds(), policyId, pager);
 
         if (totalCount > 0) {
-            items = policiesHistoryRepository.find(user.getOrgId(), user.getHostGroupIds(), policyId, pager)
-                    .stream().map(historyEntry ->
-                            new HistoryItem(historyEntry.getCtime(), historyEntry.getHostId(), historyEntry.getHostName())
-                    ).collect(Collectors.toList());
+            items = policiesHistoryRepository.findItems(user.getOrgId(), user.getHostGroupIds(), policyId, pager);
         } else {
             items = Collections.emptyList();
         }
 
         Page<HistoryItem> itemsPage = new Page<>(items, pager, totalCount);
-        return PagingUtils.responseBuilder(itemsPage);
+        return PagingUtils.responseBuilder(itemsPage, location);
     }
 
     private Response isNameUnique(Policy policy) {
@@ -18,6 +18,10 @@ package com.redhat.cloud.policies.app.rest.utils;
 
 import static java.lang.Integer.max;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.redhat.cloud.policies.app.model.pager.CountMode;
+import com.redhat.cloud.policies.app.model.pager.Cursor;
 import com.redhat.cloud.policies.app.model.pager.Page;
 import com.redhat.cloud.policies.app.model.pager.Pager;
 import com.redhat.cloud.policies.app.model.ColumnGetter;
@@ -25,6 +29,8 @@ import com.redhat.cloud.policies.app.model.ColumnInfo;
 import com.redhat.cloud.policies.app.model.filter.Filter;
 import io.quarkus.panache.common.Sort;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
@@ -44,6 +50,8 @@ public class PagingUtils {
     final static String QUERY_LIMIT = "limit";
     final static String QUERY_COLUMN = "sortColumn";
     final static String QUERY_DIRECTION = "sortDirection";
+    final static String QUERY_CURSOR = "cursor";
+    final static String QUERY_COUNT = "count";
     final static Pattern FILTER_PATTERN = Pattern.compile("^filter\\[(.+)\\]$");
     final static String FILTER_OP = "filter:op";
 
@@ -65,13 +73,37 @@ public class PagingUtils {
         // Set paging limits
         setPaging(queryParams.getFirst(QUERY_LIMIT), queryParams.getFirst(QUERY_OFFSET));
 
+        // Keyset paging is requested by passing a cursor, which is empty for the first page
+        Cursor cursor = null;
+        String cursorString = queryParams.getFirst(QUERY_CURSOR);
+        if (cursorString != null) {
+            cursor = Cursor.decode(cursorString);
+            if (cursor != null) {
+                // The cursor comes from the client, so its column is checked like a sortColumn
+                getSortableCursorColumn(cursor.getColumn());
+            }
+            pageBuilder.keysetPaging(cursor);
+        }
+
+        String countString = queryParams.getFirst(QUERY_COUNT);
+        if (countString != null) {
+            pageBuilder.countMode(CountMode.fromName(countString));
+        }
+
         // Handle sorting parts
         List<String> columns = queryParams.get(QUERY_COLUMN);
         List<String> directions = queryParams.get(QUERY_DIRECTION);
-        addSorting(columns, directions);
+        if (cursor != null && columns == null && directions == null) {
+            // The links we emit only carry the cursor, which knows the sort it was created for
+            pageBuilder.addSort(cursor.getColumn(), cursor.getDirection());
+        } else {
+            addSorting(columns, directions);
+        }
 
         // Handle filters
         addFilters(queryParams);
+        // The cursor does not know the filters, so the keyset links must pass them on
+        pageBuilder.filterParameters(getFilterParameters(queryParams));
 
         return pageBuilder.build();
     }
@@ -169,6 +201,21 @@ public class PagingUtils {
         }
     }
 
+    static String getFilterParameters(MultivaluedMap<String, String> queryParams) {
+        StringBuilder parameters = new StringBuilder();
+        for (String key : queryParams.keySet()) {
+            if (FILTER_PATTERN.matcher(key).find() || key.startsWith(FILTER_OP + "[")) {
+                for (String value : queryParams.get(key)) {
+                    parameters.append('&')
+                            .append(URLEncoder.encode(key, StandardCharsets.UTF_8))
+                            .append('=')
+                            .append(URLEncoder.encode(value == null ? "" : value, StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return parameters.toString();
+    }
+
     /**
      * Obtain the direction from the passed direction string. This string is
      * case insensitive and only the first 3 chars count. So 'asc' and 'ascending'
@@ -201,6 +248,14 @@ public class PagingUtils {
         return info;
     }
 
+    ColumnInfo getSortableCursorColumn(String fieldName) {
+        ColumnInfo info = columnGetter.getByFieldName(fieldName);
+        if (info == null || !info.isSortable()) {
+            throw new IllegalArgumentException("Unknown sortable column in cursor: [" + fieldName + "]");
+        }
+        return info;
+    }
+
     ColumnInfo getFilterableColumn(String name) {
         ColumnInfo info = columnGetter.get(name);
         if (info == null || !info.isFilterable()) {
@@ -210,15 +265,22 @@ public class PagingUtils {
     }
 
     public static <T> ResponseBuilder responseBuilder(Page<T> page) {
+        return responseBuilder(page, PagedResponse.DEFAULT_LOCATION);
+    }
+
+    public static <T> ResponseBuilder responseBuilder(Page<T> page, String location) {
         ResponseBuilder builder;
 
         if (page.isEmpty()) {
             builder = Response.status(Response.Status.NOT_FOUND);
         } else {
-            builder = Response.ok(new PagedResponse<>(page));
+            builder = Response.ok(new PagedResponse<>(page, location));
             EntityTag etag = new EntityTag(String.valueOf(page.hashCode()));
             builder.header("ETag", etag);
-            builder.header("TotalCount", Long.toString(page.getTotalCount()));
+            if (page.getCountMode() != CountMode.NONE) {
+                String totalCount = Long.toString(page.getTotalCount());
+                builder.header("TotalCount", page.isCountCapped() ? totalCount + "+" : totalCount);
+            }
         }
 
         return builder;
@@ -234,26 +296,50 @@ public class PagingUtils {
      * "next": "/api/myapp/v1/collection/?limit=5&offset=10",
      * "prev": "/api/myapp/v1/collection/?limit=5&offset=0"
      * </pre>
+     * With keyset paging there is no "last" or "prev", and "next" points to the cursor of
+     * the following page. As the cursor does not know the filters, the links repeat them:
+     * <pre>
+     * "first": "/api/myapp/v1/collection/?limit=5&cursor=",
+     * "next": "/api/myapp/v1/collection/?limit=5&cursor=bmFtZXxBfDk..."
+     * </pre>
+     * Without an exact count there is no "last" link either, and the links carry the count mode,
+     * e.g. "/api/myapp/v1/collection/?limit=5&offset=10&count=none".
      */
     public static class PagedResponse<T> {
+        static final String DEFAULT_LOCATION = "/api/policies/v1.0/policies";
+
         public Meta meta;
         public Map<String, String> links = new HashMap<>(3);
         public List<T> data = new ArrayList<>();
 
         public PagedResponse(Page<T> page) {
-            meta = new Meta(page.getTotalCount());
-            data.addAll(page);
+            this(page, DEFAULT_LOCATION);
+        }
 
+        public PagedResponse(Page<T> page, String location) {
+            meta = new Meta(page);
+            data.addAll(page);
 
-            String location = "/api/policies/v1.0/policies";
-            String format = "%s?limit=%d&offset=%d";
+            String countParam = "";
+            if (page.getCountMode() != CountMode.EXACT) {
+                countParam = "&" + QUERY_COUNT + "=" + page.getCountMode().name().toLowerCase();
+            }
+            String format = "%s?limit=%d&offset=%d" + countParam;
 
             Pager pager = page.getPager();
             int limit = pager.getLimit();
+            if (pager.isKeysetPaging()) {
+                String cursorFormat = "%s?limit=%d" + countParam + pager.getFilterParameters().replace("%", "%%") + "&cursor=%s";
+                links.put("first", String.format(cursorFormat, location, limit, ""));
+                if (page.getNextCursor() != null) {
+                    links.put("next", String.format(cursorFormat, location, limit, page.getNextCursor().encode()));
+                }
+                return;
+            }
             links.put("first", String.format(format, location, limit, 0));
             if (limit == Pager.NO_LIMIT) {
                 links.put("last", String.format(format, location, limit, 0));
-            } else {
+            } else if (page.getCountMode() == CountMode.EXACT || (page.getCountMode() == CountMode.ESTIMATE && !page.isCountCapped())) {
                 long offset;
                 if (page.getTotalCount() % limit == 0) {
                     offset = page.getTotalCount() - pager.getLimit();
@@ -263,7 +349,7 @@ public class PagingUtils {
                 links.put("last", String.format(format, location, limit, offset));
             }
             if (limit != Pager.NO_LIMIT) {
-                if (pager.getOffset() < page.getTotalCount() - limit) {
+                if (page.hasMore()) {
                     links.put("next", String.format(format, location, limit, pager.getOffset() + limit));
                 }
                 if (pager.getOffset() > 0) {
@@ -275,10 +361,26 @@ public class PagingUtils {
     }
 
     public static class Meta {
-        public long count;
+        /**
+         * Total count, absent if the items were not counted. With the estimate count mode this is a lower bound
+         * when it reaches {@link CountMode#ESTIMATE_LIMIT}.
+         */
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        public Long count;
+        @JsonProperty("count_mode")
+        public String countMode;
+        @JsonProperty("has_more")
+        public boolean hasMore;
 
         public Meta(long count) {
             this.count = count;
+            this.countMode = CountMode.EXACT.name().toLowerCase();
+        }
+
+        public Meta(Page<?> page) {
+            this.count = page.getCountMode() == CountMode.NONE ? null : page.getTotalCount();
+            this.countMode = page.getCountMode().name().toLowerCase();
+            this.hasMore = page.hasMore();
         }
     }
 }
@@ -0,0 +1,57 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.UUID;
+
+/**
+ * Fills policies_history_host_group (see V28) for the history entries written before its trigger existed.
+ * <p>
+ * The history is walked by id, and each batch is committed on its own, so that no lock on policies_history
+ * is held for the whole backfill and the engine keeps writing history meanwhile. Entries written since V28
+ * already have their rows, ON CONFLICT DO NOTHING skips them.
+ */
+public class V30__policies_history_host_group_backfill extends BaseJavaMigration {
+
+    private static final int BATCH_SIZE = 10000;
+
+    // Inserts the groups of the next batch of entries and returns the last id of the batch, no row at the end
+    private static final String BATCH = "WITH batch AS ("
+            + " SELECT id, org_id, policy_id, host_groups, ctime FROM policies_history WHERE id > ? ORDER BY id LIMIT ?"
+            + "), inserted AS ("
+            + " INSERT INTO policies_history_host_group (history_id, org_id, policy_id, group_id, ctime)"
+            + " SELECT b.id, b.org_id, b.policy_id, uuid(g ->> 'id'), b.ctime"
+            + " FROM batch b, jsonb_array_elements(b.host_groups) AS g"
+            + " WHERE b.host_groups <> '[]'::jsonb"
+            + " AND g ->> 'id' ~* '^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$'"
+            + " ON CONFLICT DO NOTHING"
+            + ") SELECT id FROM batch ORDER BY id DESC LIMIT 1";
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(true);
+        try (PreparedStatement statement = connection.prepareStatement(BATCH)) {
+            UUID lastId = new UUID(0, 0);
+            while (lastId != null) {
+                statement.setObject(1, lastId);
+                statement.setInt(2, BATCH_SIZE);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    lastId = resultSet.next() ? resultSet.getObject(1, UUID.class) : null;
+                }
+            }
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+-- Keyset paging of the policy list seeks to (sort key, id) within an org.
+-- (org_id, name) is already covered by policy_org_id_name_idx.
+CREATE INDEX ix_policy_org_id_mtime_id ON policy (org_id, mtime, id);
+CREATE INDEX ix_policy_org_id_last_triggered_id ON policy (org_id, last_triggered, id);
@@ -0,0 +1,3 @@
+-- Keyset paging of the trigger history seeks to (ctime, id) within a policy of an org.
+CREATE INDEX ix_policies_history_org_id_policy_id_ctime_id
+    ON policies_history (org_id, policy_id, ctime, id);
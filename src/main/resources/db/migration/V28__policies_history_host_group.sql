@@ -0,0 +1,38 @@
+-- Host group membership of the trigger history, one row per entry and group. Restricted users
+-- page through the history with a semi-join on this table instead of the GIN index on host_groups,
+-- which the planner could not combine well with the (org_id, policy_id) indexes.
+CREATE TABLE policies_history_host_group (
+    history_id uuid NOT NULL,
+    org_id text NOT NULL,
+    policy_id varchar(255) NOT NULL,
+    group_id uuid NOT NULL,
+    ctime bigint NOT NULL,
+    CONSTRAINT pk_policies_history_host_group PRIMARY KEY (history_id, group_id),
+    -- Entries purged by cleanPoliciesHistory() take their rows along
+    CONSTRAINT fk_policies_history_host_group_history FOREIGN KEY (history_id)
+        REFERENCES policies_history (id) ON DELETE CASCADE
+);
+
+CREATE INDEX ix_policies_history_host_group_org_id_policy_id_group_id
+    ON policies_history_host_group (org_id, policy_id, group_id, ctime, history_id);
+
+-- The history is written by policies-engine, so the table is maintained on insert by the database.
+-- Group ids which are not UUIDs are skipped rather than failing the insert of the engine.
+CREATE FUNCTION policies_history_host_group_insert() RETURNS trigger AS $$
+BEGIN
+    INSERT INTO policies_history_host_group (history_id, org_id, policy_id, group_id, ctime)
+    SELECT NEW.id, NEW.org_id, NEW.policy_id, uuid(g ->> 'id'), NEW.ctime
+    FROM jsonb_array_elements(NEW.host_groups) AS g
+    WHERE g ->> 'id' ~* '^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$'
+    ON CONFLICT DO NOTHING;
+    RETURN NULL;
+END;
+$$ LANGUAGE PLPGSQL;
+
+CREATE TRIGGER trg_policies_history_host_group
+AFTER INSERT ON policies_history
+FOR EACH ROW WHEN (NEW.host_groups <> '[]'::jsonb)
+EXECUTE FUNCTION policies_history_host_group_insert();
+
+-- The existing entries are backfilled by V30, in committed batches, so that the lock taken by
+-- CREATE TRIGGER is released right away and the engine can keep writing history.
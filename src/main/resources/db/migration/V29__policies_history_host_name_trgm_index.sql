@@ -0,0 +1,6 @@
+-- The name filter of the trigger history is a case-insensitive substring match,
+-- LOWER(host_name) LIKE '%value%', which a B-tree index cannot serve.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX ix_policies_history_lower_host_name_trgm
+    ON policies_history USING gin (LOWER(host_name) gin_trgm_ops);
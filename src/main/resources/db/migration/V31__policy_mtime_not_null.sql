@@ -0,0 +1,5 @@
+-- mtime is a keyset paging column of the policy list, which needs a non null sort key on every row.
+-- Rows without mtime get their creation time, or the current time if they have none either.
+UPDATE policy SET mtime = COALESCE(ctime, now()) WHERE mtime IS NULL;
+
+ALTER TABLE policy ALTER COLUMN mtime SET NOT NULL;
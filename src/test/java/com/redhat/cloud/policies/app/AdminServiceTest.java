@@ -47,4 +47,13 @@ class AdminServiceTest extends AbstractITest {
             .then()
             .statusCode(200);
     }
+
+    @Test
+    void testInvalidateRbacCache() {
+        given()
+            .when()
+            .delete("/admin/rbac-cache/" + orgId)
+            .then()
+            .statusCode(200);
+    }
 }
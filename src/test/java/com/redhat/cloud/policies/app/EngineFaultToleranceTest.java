@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.cloud.policies.app;
+
+import com.redhat.cloud.policies.app.health.ScheduledStatusProducer;
+import com.redhat.cloud.policies.app.lightweight.ConditionValidator;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import io.smallrye.faulttolerance.api.CircuitBreakerMaintenance;
+import org.eclipse.microprofile.faulttolerance.exceptions.CircuitBreakerOpenException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mockserver.verify.VerificationTimes;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.WebApplicationException;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockserver.model.HttpRequest.request;
+
+@QuarkusTest
+@QuarkusTestResource(TestLifecycleManager.class)
+class EngineFaultToleranceTest extends AbstractITest {
+
+    @Inject
+    ConditionValidator conditionValidator;
+
+    @Inject
+    CircuitBreakerMaintenance circuitBreakerMaintenance;
+
+    @Inject
+    ScheduledStatusProducer statusProducer;
+
+    @BeforeAll
+    static void setUpEnv() {
+        setupRhId();
+    }
+
+    @AfterEach
+    void resetCircuitBreakers() {
+        circuitBreakerMaintenance.resetAll();
+        statusProducer.update();
+    }
+
+    @Test
+    void testCircuitBreakerOpensAndFailsFast() {
+        // The engine answers 503 to these
+        for (int i = 0; i < 10; i++) {
+            String condition = "facts.failing_" + i + " = 1";
+            assertThrows(WebApplicationException.class, () -> conditionValidator.validateRemotely(condition));
+        }
+
+        assertThrows(CircuitBreakerOpenException.class, () -> conditionValidator.validateRemotely("facts.failing_10 = 1"));
+        mockServer.verify(request().withPath("/lightweight-engine/validate").withBody("facts.failing_10 = 1"),
+                VerificationTimes.never());
+
+        TestPolicy tp = new TestPolicy();
+        tp.actions = "notification";
+        tp.conditions = "facts.circuit_breaker_test = 1";
+        tp.name = "circuit-breaker-test";
+
+        given()
+                .header(authHeader)
+                .contentType(ContentType.JSON)
+                .body(tp)
+                .when()
+                .post(API_BASE_V1_0 + "/policies")
+                .then()
+                .statusCode(400)
+                .body("msg", is("Connection to backend-engine failed. Please retry later"));
+
+        statusProducer.update();
+        assertEquals("open", StuffHolder.getInstance().getStatusInfo().get("circuit-breaker-engine"));
+    }
+}
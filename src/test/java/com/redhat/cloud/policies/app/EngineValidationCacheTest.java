@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.cloud.policies.app;
+
+import com.redhat.cloud.policies.app.lightweight.ConditionValidator;
+import com.redhat.cloud.policies.app.lightweight.EngineValidationCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Test;
+import org.mockserver.verify.VerificationTimes;
+
+import jakarta.inject.Inject;
+import jakarta.validation.ValidationException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockserver.model.HttpRequest.request;
+
+@QuarkusTest
+@QuarkusTestResource(TestLifecycleManager.class)
+class EngineValidationCacheTest extends AbstractITest {
+
+    @Inject
+    ConditionValidator conditionValidator;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @Test
+    void testValidConditionIsCached() {
+        double hits = cacheGets("hit");
+        double misses = cacheGets("miss");
+
+        conditionValidator.validateRemotely("facts.cached_fact = 'x'");
+        conditionValidator.validateRemotely("  facts.cached_fact  =   'x' ");
+
+        mockServer.verify(request().withPath("/lightweight-engine/validate").withBody("facts.cached_fact = 'x'"),
+                VerificationTimes.exactly(1));
+        assertEquals(hits + 1, cacheGets("hit"));
+        assertEquals(misses + 1, cacheGets("miss"));
+    }
+
+    @Test
+    void testInvalidConditionIsCached() {
+        for (int i = 0; i < 2; i++) {
+            ValidationException e = assertThrows(ValidationException.class,
+                    () -> conditionValidator.validateRemotely("facts.arch =  broken"));
+            assertEquals("Validation failed: Extraneous input 'broken'", e.getMessage());
+        }
+
+        mockServer.verify(request().withPath("/lightweight-engine/validate").withBody("facts.arch = broken"),
+                VerificationTimes.atMost(1));
+    }
+
+    @Test
+    void testConcurrentValidationsAreCoalesced() {
+        // The engine takes 500ms to answer this one, so all calls are in flight at the same time
+        List<CompletableFuture<Void>> validations = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            validations.add(conditionValidator.validateConditionAsync("facts.slow_fact = 'x'")
+                    .subscribeAsCompletionStage());
+        }
+        CompletableFuture.allOf(validations.toArray(new CompletableFuture[0])).join();
+
+        mockServer.verify(request().withPath("/lightweight-engine/validate").withBody("facts.slow_fact = 'x'"),
+                VerificationTimes.exactly(1));
+    }
+
+    private double cacheGets(String result) {
+        FunctionCounter counter = meterRegistry.find("cache.gets")
+                .tag("cache", EngineValidationCache.CACHE_NAME)
+                .tag("result", result)
+                .functionCounter();
+        return counter == null ? 0 : counter.count();
+    }
+}
@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.Optional;
 import com.redhat.cloud.policies.app.auth.HeaderHelper;
 import com.redhat.cloud.policies.app.auth.XRhIdentity;
@@ -88,6 +89,41 @@ class HeaderHelperTest {
         assertEquals("1234", user.get().identity.accountNumber, "Account does not match");
     }
 
+    @Test
+    void testServiceAccountRID() {
+        String rhid = getStringFromFile("rhid_sa.txt", true);
+
+        Optional<XRhIdentity> user = HeaderHelper.getRhIdFromString(rhid);
+        assertTrue(user.isPresent());
+        assertEquals("service-account-599e311f-4a70-4dd3-9600-423fb5b1a2eb", user.get().getUsername(), "Username does not match");
+        assertEquals("org-id-1234", user.get().identity.orgId, "Org id does not match");
+    }
+
+    @Test
+    void testLargeRID() {
+        // Fields we don't read, like the entitlements, are skipped
+        StringBuilder json = new StringBuilder("{\"entitlements\":{");
+        for (int i = 0; i < 500; i++) {
+            json.append("\"bundle").append(i).append("\":{\"is_entitled\":true,\"is_trial\":false,\"tags\":[\"a\",{\"b\":[1,2]}]},");
+        }
+        json.append("\"last\":{}},\"identity\":{\"internal\":{\"org_id\":\"wrong\"},\"account_number\":\"5678\",")
+                .append("\"org_id\":\"org-id-5678\",\"type\":\"User\",\"user\":{\"is_active\":true,\"username\":\"jane\"}}}");
+        String rhid = Base64.getEncoder().encodeToString(json.toString().getBytes(StandardCharsets.UTF_8));
+
+        Optional<XRhIdentity> user = HeaderHelper.getRhIdFromString(rhid);
+        assertTrue(user.isPresent());
+        assertEquals("jane", user.get().getUsername(), "Username does not match");
+        assertEquals("5678", user.get().identity.accountNumber, "Account does not match");
+        assertEquals("org-id-5678", user.get().identity.orgId, "Org id does not match");
+    }
+
+    @Test
+    void testMalformedRID() {
+        assertFalse(HeaderHelper.getRhIdFromString("not base64!").isPresent());
+        assertFalse(HeaderHelper.getRhIdFromString(Base64.getEncoder().encodeToString("[1]".getBytes(StandardCharsets.UTF_8))).isPresent());
+        assertFalse(HeaderHelper.getRhIdFromString(Base64.getEncoder().encodeToString("{\"identity\":{".getBytes(StandardCharsets.UTF_8))).isPresent());
+    }
+
     @NotNull
     static String getStringFromFile(String filename, boolean removeTrailingNewline) {
         String rhid = "";
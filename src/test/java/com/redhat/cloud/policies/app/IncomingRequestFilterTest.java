@@ -1,5 +1,9 @@
 package com.redhat.cloud.policies.app;
 
+import com.redhat.cloud.policies.app.auth.IncomingRequestFilter;
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.quarkus.cache.CaffeineCache;
 import io.quarkus.test.junit.QuarkusTest;
 import io.restassured.http.Header;
 import io.vertx.core.json.JsonObject;
@@ -11,10 +15,15 @@ import static com.redhat.cloud.policies.app.AbstractITest.API_BASE_V1_0;
 import static io.restassured.RestAssured.given;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.Matchers.emptyString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 @QuarkusTest
 public class IncomingRequestFilterTest {
 
+    @CacheName(IncomingRequestFilter.CACHE_NAME)
+    Cache rhIdCache;
+
     @Test
     void testNullOrgId() {
         Header identityHeader = buildIdentityHeader(null);
@@ -48,6 +57,35 @@ public class IncomingRequestFilterTest {
                 .body(emptyString());
     }
 
+    @Test
+    void testGoodHeaderIsParsedOnce() {
+        int cachedHeaders = cachedHeaders();
+        Header identityHeader = buildIdentityHeader("org-id-rhid-cache");
+        for (int i = 0; i < 2; i++) {
+            given()
+                    .header(identityHeader)
+                    .when().get(API_BASE_V1_0 + "/policies/")
+                    .then()
+                    .statusCode(not(401));
+        }
+        assertEquals(cachedHeaders + 1, cachedHeaders());
+    }
+
+    @Test
+    void testBadHeaderIsNotCached() {
+        int cachedHeaders = cachedHeaders();
+        given()
+                .header(buildIdentityHeader(null))
+                .when().get(API_BASE_V1_0 + "/policies/")
+                .then()
+                .statusCode(401);
+        assertEquals(cachedHeaders, cachedHeaders());
+    }
+
+    private int cachedHeaders() {
+        return rhIdCache.as(CaffeineCache.class).keySet().size();
+    }
+
     private static Header buildIdentityHeader(String orgId) {
         JsonObject user = new JsonObject();
         user.put("username", "johndoe");
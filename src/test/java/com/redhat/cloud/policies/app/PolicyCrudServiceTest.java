@@ -124,6 +124,40 @@ class PolicyCrudServiceTest extends AbstractITest {
         assertEquals(3, history.getJsonObject("meta").getInteger("count"));
     }
 
+    @Test
+    void testGetPolicyHistoryWithCursor() {
+        for (int i = 1; i <= 5; i++) {
+            helper.createPoliciesHistoryEntry(TENANT_ID, ORG_ID, policyId, "host-id-" + i, "host-" + i, i);
+        }
+
+        String responseBody = given()
+                .basePath(API_BASE_V1_0)
+                .header(authHeader)
+                .pathParam("id", policyId)
+                .queryParam("limit", 2)
+                .queryParam("cursor", "")
+                .when().get("/policies/{id}/history/trigger")
+                .then().statusCode(200)
+                .extract().asString();
+
+        JsonObject history = new JsonObject(responseBody);
+        assertEquals(5, history.getJsonObject("meta").getInteger("count"));
+        assertEquals("host-5", history.getJsonArray("data").getJsonObject(0).getString("hostName"));
+        assertEquals("host-4", history.getJsonArray("data").getJsonObject(1).getString("hostName"));
+
+        String next = history.getJsonObject("links").getString("next");
+        responseBody = given()
+                .header(authHeader)
+                .when().get(next)
+                .then().statusCode(200)
+                .extract().asString();
+
+        history = new JsonObject(responseBody);
+        assertEquals(2, history.getJsonArray("data").size());
+        assertEquals("host-3", history.getJsonArray("data").getJsonObject(0).getString("hostName"));
+        assertEquals("host-2", history.getJsonArray("data").getJsonObject(1).getString("hostName"));
+    }
+
     @Transactional
     UUID createPolicy() {
 
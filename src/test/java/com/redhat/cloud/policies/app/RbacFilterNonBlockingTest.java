@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.cloud.policies.app;
+
+import com.redhat.cloud.policies.app.auth.RbacCache;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jakarta.inject.Inject;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.IntStream;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@QuarkusTest
+@QuarkusTestResource(TestLifecycleManager.class)
+@TestProfile(RbacFilterNonBlockingTest.NonBlockingProfile.class)
+class RbacFilterNonBlockingTest extends AbstractITest {
+
+    public static class NonBlockingProfile implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("rbac.filter.non-blocking", "true");
+        }
+    }
+
+    @Inject
+    RbacCache rbacCache;
+
+    @BeforeAll
+    static void setUpEnv() {
+        setupRhId();
+    }
+
+    @BeforeEach
+    void clearCache() {
+        rbacCache.invalidateAll();
+    }
+
+    @Test
+    void testAccessWhenPermissionsAreLoaded() {
+        // The first call suspends the request, the second one is served from the cache
+        for (int i = 0; i < 2; i++) {
+            given()
+                    .header(authHeader)
+                    .when()
+                    .get(API_BASE_V1_0 + "/policies/")
+                    .then()
+                    .statusCode(200);
+        }
+    }
+
+    @Test
+    void testNoAccess() {
+        given()
+                .header(authRbacNoAccess)
+                .when()
+                .get(API_BASE_V1_0 + "/policies/")
+                .then()
+                .statusCode(403);
+    }
+
+    @Test
+    void testConcurrentRequests() throws ExecutionException, InterruptedException {
+        CompletableFuture<?>[] requests = IntStream.range(0, 20)
+                .mapToObj(i -> CompletableFuture.supplyAsync(() -> given()
+                        .header(authHeader)
+                        .when()
+                        .get(API_BASE_V1_0 + "/policies/")
+                        .then()
+                        .extract().statusCode()))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(requests).get();
+        for (CompletableFuture<?> request : requests) {
+            assertEquals(200, request.get());
+        }
+    }
+}
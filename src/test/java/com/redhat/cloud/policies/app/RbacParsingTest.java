@@ -112,6 +112,25 @@ class RbacParsingTest {
         assertEquals(List.of("654321"), rbac.data.get(2).hostGroupIds());
     }
 
+    @Test
+    void testManyAccessEntries() throws Exception {
+        // Large payloads, as returned for users with many roles
+        StringBuilder json = new StringBuilder("{\"data\": [");
+        for (int i = 0; i < 150; i++) {
+            json.append("{\"permission\": \"app").append(i).append(":res").append(i).append(":read\"},");
+        }
+        json.append("{\"permission\": \"policies:*:write\"}, {\"permission\": \"incomplete\"}]}");
+        RbacRaw rbac = objectMapper.readValue(json.toString(), RbacRaw.class);
+
+        assertTrue(rbac.canRead("app42", "res42"));
+        assertFalse(rbac.canRead("app42", "res43"));
+        assertFalse(rbac.canWrite("app42", "res42"));
+        assertTrue(rbac.canWrite("policies", "policies"));
+        assertFalse(rbac.canRead("policies", "policies"));
+        assertFalse(rbac.canRead("incomplete", "*"));
+        assertEquals(List.of(), rbac.hostGroupIds());
+    }
+
     @Test
     void testHostGroupsAccess() throws Exception {
         File file = new File("src/test/resources/rbac_example_groups.json");
@@ -20,16 +20,21 @@ import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
 
 import static io.restassured.RestAssured.given;
+import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 
+import com.redhat.cloud.policies.app.model.Policy;
+import com.redhat.cloud.policies.app.model.engine.HistoryItem;
 import com.redhat.cloud.policies.app.model.history.PoliciesHistoryEntry;
 import com.redhat.cloud.policies.app.model.history.PoliciesHistoryRepository;
+import io.agroal.api.AgroalDataSource;
 import io.quarkus.test.InjectMock;
 import io.quarkus.test.common.QuarkusTestResource;
 import io.quarkus.test.junit.QuarkusTest;
@@ -39,13 +44,21 @@ import io.restassured.http.Headers;
 import io.restassured.path.json.JsonPath;
 import io.restassured.response.ExtractableResponse;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import jakarta.inject.Inject;
 import jakarta.json.Json;
 
@@ -54,7 +67,9 @@ import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
 import org.hibernate.Session;
+import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Disabled;
@@ -76,6 +91,12 @@ class RestApiTest extends AbstractITest {
     @Inject
     Session session;
 
+    @Inject
+    SessionFactory sessionFactory;
+
+    @Inject
+    AgroalDataSource dataSource;
+
     final String TENANT_ID = "1234";
     final String ORG_ID = "org-id-1234";
     final UUID POLICY_ID = UUID.fromString("8671900e-9d31-47bf-9249-8f45698ede72");
@@ -204,6 +225,40 @@ class RestApiTest extends AbstractITest {
         assertEquals(numberOfPolicies, jsonPath.getList("").size());
     }
 
+    @Test
+    void testExportPolicies() {
+        long numberOfPolicies = countPoliciesInDB();
+
+        String body =
+                given()
+                        .header(authHeader)
+                        .when().get(API_BASE_V1_0 + "/policies/export")
+                        .then()
+                        .statusCode(200)
+                        .contentType("application/x-ndjson")
+                        .extract().body().asString();
+
+        String[] lines = body.split("\n");
+        assertEquals(numberOfPolicies, lines.length);
+        List<String> ids = new ArrayList<>();
+        for (String line : lines) {
+            JsonObject policy = new JsonObject(line);
+            assertNotNull(policy.getString("name"));
+            ids.add(policy.getString("id"));
+        }
+        assertTrue(ids.contains("9b3b4429-1393-4120-95da-54c17a512367"));
+    }
+
+    @Test
+    void testExportPoliciesBadAuth() {
+        given()
+                .header(authRbacNoAccess)
+                .when()
+                .get(API_BASE_V1_0 + "/policies/export")
+                .then()
+                .statusCode(403);
+    }
+
     @Test
     void testGetPolicyIdsBadAuth() {
 
@@ -362,6 +417,35 @@ class RestApiTest extends AbstractITest {
         extractAndCheck(links, "last", 5, 10);
     }
 
+    @Test
+    void testGetPoliciesPagedWalkAll() {
+        long policiesInDb = countPoliciesInDB();
+
+        List<String> ids = new ArrayList<>();
+        for (int offset = 0; offset < policiesInDb; offset += 3) {
+            JsonPath jsonPath =
+                    given()
+                            .header(authHeader)
+                            .when()
+                            .get(API_BASE_V1_0 + "/policies/?limit=3&sortColumn=name&offset=" + offset)
+                            .then()
+                            .statusCode(200)
+                            .extract().body().jsonPath();
+
+            assertEquals(policiesInDb, jsonPath.getInt("meta.count"));
+            ids.addAll(jsonPath.getList("data.id"));
+        }
+        assertEquals(policiesInDb, ids.stream().distinct().count());
+
+        // Past the last policy
+        given()
+                .header(authHeader)
+                .when()
+                .get(API_BASE_V1_0 + "/policies/?limit=3&offset=" + (policiesInDb + 3))
+                .then()
+                .statusCode(404);
+    }
+
     @Test
     void testGetPolicyIdsPaged3() {
 
@@ -535,6 +619,152 @@ class RestApiTest extends AbstractITest {
         extractAndCheck(links, "last", -1, 0);
     }
 
+    @Test
+    void testGetPoliciesCursorPaged() {
+        long policiesInDb = countPoliciesInDB();
+
+        for (String column : List.of("name", "mtime", "last_triggered", "is_enabled")) {
+            for (String direction : List.of("asc", "desc")) {
+                List<String> ids = new ArrayList<>();
+                List<Boolean> enabled = new ArrayList<>();
+                String url = API_BASE_V1_0 + "/policies/?limit=4&cursor=&sortColumn=" + column + "&sortDirection=" + direction;
+                while (url != null) {
+                    JsonPath jsonPath =
+                            given()
+                                    .header(authHeader)
+                                    .when()
+                                    .get(url)
+                                    .then()
+                                    .statusCode(200)
+                                    .extract().body().jsonPath();
+
+                    assertEquals(policiesInDb, jsonPath.getInt("meta.count"));
+                    ids.addAll(jsonPath.getList("data.id"));
+                    enabled.addAll(jsonPath.getList("data.isEnabled"));
+                    Map<String, String> links = jsonPath.get("links");
+                    assertFalse(links.containsKey("last"));
+                    assertFalse(links.containsKey("prev"));
+                    url = links.get("next");
+                }
+
+                String sort = column + " " + direction;
+                assertEquals(policiesInDb, ids.size(), sort);
+                assertEquals(policiesInDb, ids.stream().distinct().count(), sort);
+                if (column.equals("is_enabled")) {
+                    // All disabled policies come first when ascending, last when descending
+                    boolean first = !direction.equals("asc");
+                    int switches = 0;
+                    for (int i = 1; i < enabled.size(); i++) {
+                        if (!enabled.get(i).equals(enabled.get(i - 1))) {
+                            switches++;
+                        }
+                    }
+                    assertTrue(switches <= 1, sort);
+                    assertEquals(first, enabled.get(0), sort);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testGetPoliciesCursorPagedWithoutCount() {
+        long policiesInDb = countPoliciesInDB();
+
+        List<String> ids = new ArrayList<>();
+        String url = API_BASE_V1_0 + "/policies/?limit=4&cursor=&sortColumn=mtime&count=none";
+        while (url != null) {
+            ExtractableResponse<Response> response =
+                    given()
+                            .header(authHeader)
+                            .when()
+                            .get(url)
+                            .then()
+                            .statusCode(200)
+                            .extract();
+
+            assertNull(response.header("TotalCount"));
+            ids.addAll(response.body().jsonPath().getList("data.id"));
+            Map<String, String> links = response.body().jsonPath().get("links");
+            url = links.get("next");
+            if (url != null) {
+                assertTrue(url.contains("count=none"), url);
+            }
+        }
+
+        assertEquals(policiesInDb, ids.size());
+        assertEquals(policiesInDb, ids.stream().distinct().count());
+    }
+
+    @Test
+    void testGetPoliciesCursorPagedFiltered() {
+        List<String> ids = new ArrayList<>();
+        List<Boolean> enabled = new ArrayList<>();
+        long count = -1;
+        int pages = 0;
+        String url = API_BASE_V1_0 + "/policies/?limit=4&cursor=&sortColumn=name&filter%5Bis_enabled%5D=true";
+        while (url != null) {
+            JsonPath jsonPath =
+                    given()
+                            // The links are already encoded
+                            .urlEncodingEnabled(false)
+                            .header(authHeader)
+                            .when()
+                            .get(url)
+                            .then()
+                            .statusCode(200)
+                            .extract().body().jsonPath();
+
+            count = jsonPath.getLong("meta.count");
+            ids.addAll(jsonPath.getList("data.id"));
+            enabled.addAll(jsonPath.getList("data.isEnabled"));
+            Map<String, String> links = jsonPath.get("links");
+            url = links.get("next");
+            pages++;
+        }
+
+        // The filter must hold on the pages reached through the next links too
+        assertTrue(pages > 1);
+        assertTrue(count < countPoliciesInDB());
+        assertEquals(count, ids.size());
+        assertEquals(count, ids.stream().distinct().count());
+        assertFalse(enabled.contains(false));
+    }
+
+    @Test
+    void testGetPoliciesCursorPagedLinks() {
+        JsonPath jsonPath =
+                given()
+                        .header(authHeader)
+                        .when()
+                        .get(API_BASE_V1_0 + "/policies/?limit=5&cursor=")
+                        .then()
+                        .statusCode(200)
+                        .extract().body().jsonPath();
+
+        assertEquals(5, jsonPath.getList("data").size());
+        Map<String, String> links = jsonPath.get("links");
+        assertEquals(2, links.size());
+        assertTrue(links.get("first").endsWith("limit=5&cursor="));
+        assertTrue(links.get("next").contains("limit=5&cursor="));
+    }
+
+    @Test
+    void testGetPoliciesCursorBadSort() {
+        given()
+                .header(authHeader)
+                .when()
+                .get(API_BASE_V1_0 + "/policies/?cursor=&sortColumn=description")
+                .then()
+                .statusCode(400);
+
+        given()
+                .header(authHeader)
+                .when()
+                .get(API_BASE_V1_0 + "/policies/?cursor=not-a-cursor")
+                .then()
+                .statusCode(400);
+    }
+
     @Test
     void testGetPoliciesInvalidSort() {
         given()
@@ -1637,10 +1867,48 @@ class RestApiTest extends AbstractITest {
                         .extract().body().jsonPath();
 
         List<String> list = jsonPath.getList("");
-        assertEquals(3, list.size());
+        // Only the policy that existed has been deleted
+        assertEquals(1, list.size());
         assertTrue(list.contains("cd6cceb8-65dd-4988-a566-251fd20d7e2c"));
     }
 
+    @Test
+    void deletePoliciesStatementCount() {
+        List<UUID> uuids = new ArrayList<>();
+        Transaction transaction = session.beginTransaction();
+        for (int i = 0; i < 20; i++) {
+            Policy policy = new Policy();
+            policy.id = UUID.randomUUID();
+            policy.customerid = accountId;
+            policy.orgId = orgId;
+            policy.name = "bulk-delete-" + policy.id;
+            policy.conditions = "arch = \"x86_64\"";
+            session.persist(policy);
+            uuids.add(policy.id);
+        }
+        session.flush();
+        transaction.commit();
+        uuids.add(UUID.randomUUID());
+
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+
+        JsonPath jsonPath =
+                given()
+                        .header(authHeader)
+                        .contentType(ContentType.JSON)
+                        .body(uuids)
+                        .when()
+                        .delete(API_BASE_V1_0 + "/policies/ids")
+                        .then()
+                        .statusCode(200)
+                        .extract().body().jsonPath();
+
+        assertEquals(20, jsonPath.getList("").size());
+        // One DELETE for all the policies and one upsert of the latest update timestamp
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
     @Test
     void deletePoliciesNoAuth() {
         List<UUID> uuids = new ArrayList<>();
@@ -1721,6 +1989,206 @@ class RestApiTest extends AbstractITest {
 
     }
 
+    @Test
+    void enableDisablePoliciesBulk() {
+        for (int count : List.of(1, 100, 5000)) {
+            List<UUID> uuids = insertPolicies("bulk-toggle-", count);
+            try {
+                Statistics statistics = sessionFactory.getStatistics();
+                statistics.clear();
+
+                JsonPath jsonPath =
+                        given()
+                                .header(authHeader)
+                                .contentType(ContentType.JSON)
+                                .body(uuids)
+                                .when()
+                                .queryParam("enabled", true)
+                                .post(API_BASE_V1_0 + "/policies/ids/enabled")
+                                .then()
+                                .statusCode(200)
+                                .extract().body().jsonPath();
+
+                assertEquals(count, jsonPath.getList("").size());
+                // One UPDATE for all the policies and one upsert of the latest update timestamp
+                assertEquals(2, statistics.getPrepareStatementCount(), count + " policies");
+            } finally {
+                deletePoliciesByName("bulk-toggle-");
+            }
+        }
+    }
+
+    @Test
+    void storePoliciesBatch() {
+        List<TestPolicy> policies = new ArrayList<>();
+        policies.add(batchPolicy("batch-import-1", "cores = 2"));
+        policies.add(batchPolicy("batch-import-2", "facts.arch = broken"));
+        policies.add(batchPolicy("batch-import-1", "cores = 3"));
+        policies.add(batchPolicy("1st policy", "cores = 4"));
+        policies.add(batchPolicy("batch-import-3", null));
+        policies.add(batchPolicy("batch-import-4", "cores = 5"));
+
+        try {
+            JsonPath jsonPath =
+                    given()
+                            .header(authHeader)
+                            .contentType(ContentType.JSON)
+                            .body(policies)
+                            .when()
+                            .post(API_BASE_V1_0 + "/policies/batch")
+                            .then()
+                            .statusCode(200)
+                            .extract().body().jsonPath();
+
+            assertEquals(List.of(0, 1, 2, 3, 4, 5), jsonPath.getList("index"));
+            assertEquals(List.of(201, 400, 409, 409, 400, 201), jsonPath.getList("status"));
+            assertTrue(jsonPath.getString("[1].msg").contains("Extraneous input"));
+            assertNotNull(jsonPath.getString("[0].id"));
+
+            given()
+                    .header(authHeader)
+                    .when()
+                    .get(API_BASE_V1_0 + "/policies/" + jsonPath.getString("[5].id"))
+                    .then()
+                    .statusCode(200)
+                    .body("name", is("batch-import-4"));
+        } finally {
+            deletePoliciesByName("batch-import-");
+        }
+    }
+
+    @Test
+    void storePoliciesBatchNameTakenConcurrently() throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            // The policy is stored by another transaction, which only commits once the batch waits for it
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO policy (id, customerid, org_id, name, conditions) VALUES (?, ?, ?, ?, ?)")) {
+                statement.setObject(1, UUID.randomUUID());
+                statement.setString(2, accountId);
+                statement.setString(3, orgId);
+                statement.setString(4, "batch-collision-1");
+                statement.setString(5, "cores = 1");
+                statement.executeUpdate();
+            }
+
+            CompletableFuture<JsonPath> batch = CompletableFuture.supplyAsync(() ->
+                    given()
+                            .header(authHeader)
+                            .contentType(ContentType.JSON)
+                            .body(List.of(batchPolicy("batch-collision-1", "cores = 2"), batchPolicy("batch-collision-2", "cores = 3")))
+                            .when()
+                            .post(API_BASE_V1_0 + "/policies/batch")
+                            .then()
+                            .statusCode(200)
+                            .extract().body().jsonPath());
+
+            // The insert of the batch waits on the unique index for the transaction above
+            await().atMost(Duration.ofSeconds(10)).until(() -> countLockWaits() > 0);
+            connection.commit();
+
+            JsonPath jsonPath = batch.get(10, TimeUnit.SECONDS);
+            assertEquals(List.of(409, 201), jsonPath.getList("status"));
+            assertNotNull(jsonPath.getString("[1].id"));
+        } finally {
+            deletePoliciesByName("batch-collision-");
+        }
+    }
+
+    private long countLockWaits() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT count(*) FROM pg_stat_activity WHERE wait_event_type = 'Lock'")) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    @Test
+    void storePoliciesBatchNdjson() {
+        String body = "{\"name\":\"batch-ndjson-1\",\"conditions\":\"cores = 2\",\"actions\":\"notification\"}\n"
+                + "{\"name\":\"batch-ndjson-2\",\"conditions\":\"cores = 3\"}\n";
+        try {
+            JsonPath jsonPath =
+                    given()
+                            .header(authHeader)
+                            .contentType("application/x-ndjson")
+                            .body(body)
+                            .when()
+                            .post(API_BASE_V1_0 + "/policies/batch")
+                            .then()
+                            .statusCode(200)
+                            .extract().body().jsonPath();
+
+            assertEquals(List.of(201, 201), jsonPath.getList("status"));
+        } finally {
+            deletePoliciesByName("batch-ndjson-");
+        }
+    }
+
+    @Test
+    void storePoliciesBatchBadBody() {
+        given()
+                .header(authHeader)
+                .contentType(ContentType.JSON)
+                .body("[{\"name\":")
+                .when()
+                .post(API_BASE_V1_0 + "/policies/batch")
+                .then()
+                .statusCode(400);
+
+        given()
+                .header(authHeader)
+                .contentType(ContentType.JSON)
+                .body("[]")
+                .when()
+                .post(API_BASE_V1_0 + "/policies/batch")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    void storePoliciesBatchNoAuth() {
+        given()
+                .header(authRbacNoAccess)
+                .contentType(ContentType.JSON)
+                .body(List.of(batchPolicy("batch-import-1", "cores = 2")))
+                .when()
+                .post(API_BASE_V1_0 + "/policies/batch")
+                .then()
+                .statusCode(403);
+    }
+
+    private static TestPolicy batchPolicy(String name, String conditions) {
+        TestPolicy policy = new TestPolicy();
+        policy.name = name;
+        policy.conditions = conditions;
+        policy.actions = "notification";
+        return policy;
+    }
+
+    private List<UUID> insertPolicies(String namePrefix, int count) {
+        Transaction transaction = session.beginTransaction();
+        List<UUID> uuids = session.createNativeQuery("INSERT INTO policy (id, customerid, org_id, name, conditions) " +
+                        "SELECT CAST(md5(:prefix || g) AS uuid), :accountId, :orgId, :prefix || g, 'arch = \"x86_64\"' " +
+                        "FROM generate_series(1, :count) AS g RETURNING id", UUID.class)
+                .setParameter("prefix", namePrefix)
+                .setParameter("accountId", accountId)
+                .setParameter("orgId", orgId)
+                .setParameter("count", count)
+                .getResultList();
+        transaction.commit();
+        return uuids;
+    }
+
+    private void deletePoliciesByName(String namePrefix) {
+        Transaction transaction = session.beginTransaction();
+        session.createNativeMutationQuery("DELETE FROM policy WHERE org_id = :orgId AND name LIKE :prefix")
+                .setParameter("orgId", orgId)
+                .setParameter("prefix", namePrefix + "%")
+                .executeUpdate();
+        transaction.commit();
+    }
+
     @Test
     void enableDisableNullBody() {
 
@@ -1879,7 +2347,7 @@ class RestApiTest extends AbstractITest {
             entries.add(entry);
         }
         when(policiesHistoryRepository.count(eq(orgId), eq(null), eq(POLICY_ID), any())).thenReturn((long) entries.size());
-        when(policiesHistoryRepository.find(eq(orgId), eq(null), eq(POLICY_ID), any())).thenReturn(entries);
+        when(policiesHistoryRepository.findItems(eq(orgId), eq(null), eq(POLICY_ID), any())).thenReturn(toHistoryItems(entries));
     }
 
     private void mockPoliciesHistory(String hostId, String hostName, int count, List<UUID> userHostGroups) {
@@ -1901,6 +2369,14 @@ class RestApiTest extends AbstractITest {
             entries.add(entry);
         }
         when(policiesHistoryRepository.count(eq(orgId), eq(userHostGroups), eq(POLICY_ID), any())).thenReturn((long) entries.size());
-        when(policiesHistoryRepository.find(eq(orgId), eq(userHostGroups), eq(POLICY_ID), any())).thenReturn(entries);
+        when(policiesHistoryRepository.findItems(eq(orgId), eq(userHostGroups), eq(POLICY_ID), any())).thenReturn(toHistoryItems(entries));
+    }
+
+    private static List<HistoryItem> toHistoryItems(List<PoliciesHistoryEntry> entries) {
+        List<HistoryItem> items = new ArrayList<>();
+        for (PoliciesHistoryEntry entry : entries) {
+            items.add(new HistoryItem(entry.getCtime(), entry.getHostId(), entry.getHostName()));
+        }
+        return items;
     }
 }
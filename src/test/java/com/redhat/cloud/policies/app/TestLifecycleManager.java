@@ -19,11 +19,13 @@ package com.redhat.cloud.policies.app;
 import static org.mockserver.integration.ClientAndServer.startClientAndServer;
 import static org.mockserver.model.HttpRequest.request;
 import static org.mockserver.model.HttpResponse.response;
+import static org.mockserver.model.RegexBody.regex;
 
 import io.quarkus.test.common.QuarkusTestResourceLifecycleManager;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import org.mockserver.integration.ClientAndServer;
 import org.mockserver.model.HttpResponse;
 import org.testcontainers.containers.PostgreSQLContainer;
@@ -94,6 +96,15 @@ public class TestLifecycleManager implements QuarkusTestResourceLifecycleManager
     }
 
     private void mockEngine() {
+        mockServer
+                .when(request().withPath("/lightweight-engine/validate").withBody("facts.arch = broken"))
+                .respond(response().withStatusCode(400).withBody("{\"errorMsg\":\"Extraneous input 'broken'\"}"));
+        mockServer
+                .when(request().withPath("/lightweight-engine/validate").withBody(regex("facts\\.failing_.*")))
+                .respond(response().withStatusCode(503));
+        mockServer
+                .when(request().withPath("/lightweight-engine/validate").withBody("facts.slow_fact = 'x'"))
+                .respond(response().withStatusCode(200).withDelay(TimeUnit.MILLISECONDS, 500));
         mockServer
                 .when(request().withPath("/lightweight-engine/validate"))
                 .respond(response().withStatusCode(200));
@@ -1,15 +1,20 @@
 package com.redhat.cloud.policies.app.auth;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import com.redhat.cloud.policies.app.auth.models.RbacRaw;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.cache.CompositeCacheKey;
 import io.quarkus.test.InjectMock;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.awaitility.Awaitility.await;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
@@ -17,9 +22,15 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import java.security.Principal;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import jakarta.inject.Inject;
 import jakarta.ws.rs.container.ContainerRequestContext;
@@ -46,6 +57,21 @@ public class RbacFilterTest {
     @Inject
     RbacFilter rbacFilter;
 
+    @Inject
+    RbacCache rbacCache;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void beforeEach() {
+        // Every test uses the same user, so a cached result would hide the mocked RBAC answer
+        rbacCache.invalidateAll();
+        rbacCache.refreshAfter = Duration.ofSeconds(60);
+        Mockito.when(user.getOrgId()).thenReturn("org-id-rbac-filter");
+        Mockito.when(user.getName()).thenReturn("rbac-filter-user");
+    }
+
     @Test
     void testAbortsOnRBACError() throws Exception {
         Mockito.when(rbacClient.getRbacInfo(Mockito.any())).thenThrow(RuntimeException.class);
@@ -139,6 +165,134 @@ public class RbacFilterTest {
         verify(userPrincipal, times(0)).setRbac(Mockito.anyBoolean(), Mockito.anyBoolean(), any());
     }
 
+    @Test
+    void testPermissionsAreCachedPerUser() throws Exception {
+        RbacRaw rbacResult = mock(RbacRaw.class);
+        Mockito.when(rbacResult.canRead("policies", "policies")).thenReturn(true);
+        Mockito.when(rbacResult.canWrite("policies", "policies")).thenReturn(true);
+        Mockito.when(rbacResult.hostGroupIds()).thenReturn(null);
+        Mockito.when(rbacClient.getRbacInfo(Mockito.any())).thenReturn(rbacResult);
+
+        // Same user, but the headers differ, e.g. in the entitlements
+        Mockito.when(user.getRawRhIdHeader()).thenReturn("header-1", "header-2");
+        for (int i = 0; i < 2; i++) {
+            PreMatchContainerRequestContext context = spy(new PreMatchContainerRequestContext(MockHttpRequest.get("/"), null, null));
+            context.setSecurityContext(securityContext());
+            rbacFilter.filter(context);
+            verify(context, Mockito.times(0)).abortWith(Mockito.any());
+        }
+        verify(rbacClient, times(1)).getRbacInfo(Mockito.any());
+
+        assertEquals(1, rbacCache.invalidateOrg("org-id-rbac-filter"));
+        assertEquals(0, rbacCache.invalidateOrg("org-id-rbac-filter"));
+    }
+
+    @Test
+    void testStalePermissionsAreRefreshedInBackground() throws Exception {
+        rbacCache.refreshAfter = Duration.ZERO;
+
+        RbacRaw readOnly = mock(RbacRaw.class);
+        Mockito.when(readOnly.canRead("policies", "policies")).thenReturn(true);
+        RbacRaw readWrite = mock(RbacRaw.class);
+        Mockito.when(readWrite.canRead("policies", "policies")).thenReturn(true);
+        Mockito.when(readWrite.canWrite("policies", "policies")).thenReturn(true);
+        Mockito.when(rbacClient.getRbacInfo(Mockito.any())).thenReturn(readOnly, readWrite);
+
+        PreMatchContainerRequestContext context = spy(new PreMatchContainerRequestContext(MockHttpRequest.get("/"), null, null));
+        context.setSecurityContext(securityContext());
+        rbacFilter.filter(context);
+
+        // The stale entry was returned, the refreshed one is there once the background call is done
+        verify(user, times(2)).setRbac(true, false, null);
+        await().atMost(Duration.ofSeconds(5))
+                .until(() -> rbacCache.getPermissions("org-id-rbac-filter", "rbac-filter-user", null).canWritePolicies());
+    }
+
+    @Test
+    void testFailedRefreshKeepsStalePermissions() throws Exception {
+        double failures = meterRegistry.counter("rbac_cache_refresh", "result", "failure").count();
+
+        RbacRaw rbacResult = mock(RbacRaw.class);
+        Mockito.when(rbacResult.canRead("policies", "policies")).thenReturn(true);
+        Mockito.when(rbacClient.getRbacInfo(Mockito.any())).thenReturn(rbacResult).thenThrow(RuntimeException.class);
+
+        rbacCache.getPermissions("org-id-rbac-filter", "rbac-filter-user", null);
+        rbacCache.refreshAfter = Duration.ZERO;
+        RbacPermissions stale = rbacCache.getPermissions("org-id-rbac-filter", "rbac-filter-user", null);
+        assertTrue(stale.canReadPolicies());
+
+        await().atMost(Duration.ofSeconds(5))
+                .until(() -> meterRegistry.counter("rbac_cache_refresh", "result", "failure").count() > failures);
+        assertTrue(rbacCache.getPermissions("org-id-rbac-filter", "rbac-filter-user", null).canReadPolicies());
+    }
+
+    @Test
+    void testFailedRefreshGivesStalePermissionsToWaiters() throws Exception {
+        RbacRaw rbacResult = mock(RbacRaw.class);
+        Mockito.when(rbacResult.canRead("policies", "policies")).thenReturn(true);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(rbacClient.getRbacInfo(Mockito.any())).thenReturn(rbacResult).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            throw new LinkageError("RBAC refresh failed");
+        }).thenReturn(rbacResult);
+
+        rbacCache.getPermissions("org-id-rbac-filter", "rbac-filter-user", null);
+        rbacCache.refreshAfter = Duration.ZERO;
+        // Returns the stale entry and starts the refresh, which hangs until released
+        rbacCache.getPermissions("org-id-rbac-filter", "rbac-filter-user", null);
+
+        // The entry expires while the refresh is in flight, the next lookup is a miss and waits for the refresh
+        rbacCache.cache.invalidate(new CompositeCacheKey("org-id-rbac-filter", "rbac-filter-user")).await().indefinitely();
+        double waiters = meterRegistry.counter("rbac_cache_coalesced_waiters").count();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<RbacPermissions> miss = executor.submit(() -> rbacCache.getPermissions("org-id-rbac-filter", "rbac-filter-user", null));
+            await().atMost(Duration.ofSeconds(5))
+                    .until(() -> meterRegistry.counter("rbac_cache_coalesced_waiters").count() > waiters);
+            release.countDown();
+            assertTrue(miss.get(5, TimeUnit.SECONDS).canReadPolicies());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // The failed refresh is not in flight anymore, the next miss calls RBAC again
+        rbacCache.refreshAfter = Duration.ofSeconds(60);
+        rbacCache.cache.invalidate(new CompositeCacheKey("org-id-rbac-filter", "rbac-filter-user")).await().indefinitely();
+        assertTrue(rbacCache.getPermissions("org-id-rbac-filter", "rbac-filter-user", null).canReadPolicies());
+        verify(rbacClient, times(3)).getRbacInfo(Mockito.any());
+    }
+
+    @Test
+    void testConcurrentMissesShareOneCall() throws Exception {
+        double waiters = meterRegistry.counter("rbac_cache_coalesced_waiters").count();
+
+        RbacRaw rbacResult = mock(RbacRaw.class);
+        Mockito.when(rbacResult.canRead("policies", "policies")).thenReturn(true);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(rbacClient.getRbacInfo(Mockito.any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return rbacResult;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<RbacPermissions>> results = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                results.add(executor.submit(() -> rbacCache.getPermissions("org-id-rbac-filter", "rbac-filter-user", null)));
+            }
+            // The first miss is waiting for RBAC, the 4 others wait for the first one
+            await().atMost(Duration.ofSeconds(5))
+                    .until(() -> meterRegistry.counter("rbac_cache_coalesced_waiters").count() == waiters + 4);
+            release.countDown();
+            for (Future<RbacPermissions> result : results) {
+                assertTrue(result.get(5, TimeUnit.SECONDS).canReadPolicies());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(rbacClient, times(1)).getRbacInfo(Mockito.any());
+    }
+
     @Test
     void testSomePathsAlwaysAllowed() throws Exception {
         Mockito.when(rbacClient.getRbacInfo(Mockito.any())).thenThrow(RuntimeException.class);
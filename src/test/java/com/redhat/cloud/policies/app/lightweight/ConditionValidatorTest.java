@@ -0,0 +1,149 @@
+package com.redhat.cloud.policies.app.lightweight;
+
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jakarta.validation.ValidationException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the conditions of condition-corpus.tsv through the local parser and through the validator.
+ * The engine is not available here, so it is replaced by a mock answering with the expected verdict of the corpus.
+ */
+class ConditionValidatorTest {
+
+    private static final Path CORPUS = Path.of("src/test/resources/condition-corpus.tsv");
+
+    private static final Set<String> FACTS = Set.of(
+            "facts.arch",
+            "facts.number_of_cpus",
+            "facts.number_of_sockets",
+            "facts.cores_per_socket",
+            "facts.system_memory_bytes",
+            "facts.enabled_services",
+            "facts.installed_packages",
+            "facts.yum_repos",
+            "facts.os_release",
+            "facts.ansible.tower_version"
+    );
+
+    private List<CorpusEntry> corpus;
+    private GuardedLightweightEngine engine;
+    private ConditionValidator validator;
+
+    @BeforeEach
+    void beforeEach() throws IOException {
+        corpus = Files.readAllLines(CORPUS).stream()
+                .filter(line -> !line.isBlank() && !line.startsWith("#"))
+                .map(CorpusEntry::new)
+                .collect(Collectors.toList());
+
+        engine = mock(GuardedLightweightEngine.class);
+        when(engine.validateCondition(anyString())).thenReturn(Uni.createFrom().voidItem());
+        for (CorpusEntry entry : corpus) {
+            if (!entry.expectedValid) {
+                when(engine.validateCondition(entry.condition))
+                        .thenReturn(Uni.createFrom().failure(new ValidationException("Validation failed: rejected by the engine")));
+            }
+        }
+
+        EngineValidationCache engineValidationCache = new EngineValidationCache();
+        engineValidationCache.lightweightEngine = engine;
+
+        validator = new ConditionValidator();
+        validator.engineValidationCache = engineValidationCache;
+        validator.knownFacts = FACTS;
+    }
+
+    @Test
+    void testParserVerdicts() {
+        for (CorpusEntry entry : corpus) {
+            ConditionParser.Result result = new ConditionParser(FACTS).parse(entry.condition);
+            assertEquals(entry.localVerdict, result.getVerdict(), entry.condition);
+        }
+    }
+
+    @Test
+    void testLocalVerdictsAgreeWithExpected() {
+        for (CorpusEntry entry : corpus) {
+            if (entry.localVerdict == ConditionParser.Verdict.VALID) {
+                assertTrue(entry.expectedValid, entry.condition);
+            } else if (entry.localVerdict == ConditionParser.Verdict.INVALID) {
+                assertFalse(entry.expectedValid, entry.condition);
+            }
+        }
+    }
+
+    @Test
+    void testValidatorDefersUndecidedToEngine() {
+        for (CorpusEntry entry : corpus) {
+            if (entry.expectedValid) {
+                validator.validateCondition(entry.condition);
+            } else {
+                assertThrows(ValidationException.class, () -> validator.validateCondition(entry.condition), entry.condition);
+            }
+
+            if (entry.localVerdict == ConditionParser.Verdict.UNDECIDED) {
+                verify(engine, times(1)).validateCondition(entry.condition);
+            } else {
+                verify(engine, never()).validateCondition(entry.condition);
+            }
+        }
+    }
+
+    @Test
+    void testEmptyCondition() {
+        assertThrows(ValidationException.class, () -> validator.validateCondition(null));
+        assertThrows(ValidationException.class, () -> validator.validateCondition(" "));
+        verify(engine, never()).validateCondition(anyString());
+    }
+
+    @Test
+    void testInvalidMessage() {
+        try {
+            validator.validateCondition("facts.arch = 'x86_64' AND");
+            fail("Condition should be invalid");
+        } catch (ValidationException e) {
+            assertEquals("Validation failed: Missing operand after AND", e.getMessage());
+        }
+    }
+
+    @Test
+    void testNormalize() {
+        assertEquals("facts.arch = 'x86_64' AND facts.number_of_cpus > 4",
+                ConditionValidator.normalize("  facts.arch   =\t'x86_64'\n AND facts.number_of_cpus >  4 "));
+        assertEquals("facts.os_release = 'a  b'", ConditionValidator.normalize("facts.os_release  =  'a  b'"));
+        assertEquals("facts.os_release = \"it\\\"s  8\"", ConditionValidator.normalize("facts.os_release = \"it\\\"s  8\""));
+    }
+
+    private static class CorpusEntry {
+        final boolean expectedValid;
+        final ConditionParser.Verdict localVerdict;
+        final String condition;
+
+        CorpusEntry(String line) {
+            String[] columns = line.split("\t", 3);
+            expectedValid = columns[0].equals("valid");
+            localVerdict = ConditionParser.Verdict.valueOf(columns[1]);
+            condition = columns[2];
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.redhat.cloud.policies.app.model;
+
+import com.redhat.cloud.policies.app.TestLifecycleManager;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that writes of many policies go out in JDBC batches, see
+ * the statement-batch-size and ordering settings in application.properties.
+ */
+@QuarkusTest
+@QuarkusTestResource(TestLifecycleManager.class)
+class PolicyBatchingTest {
+
+    private static final String ORG_ID = "org-id-batching";
+    private static final int POLICY_COUNT = 20;
+
+    @Inject
+    Session session;
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    @Transactional
+    @AfterEach
+    void afterEach() {
+        session.createMutationQuery("DELETE FROM Policy WHERE orgId = :orgId")
+                .setParameter("orgId", ORG_ID)
+                .executeUpdate();
+    }
+
+    @Test
+    @Transactional
+    void testInsertsAreBatched() {
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+
+        createPolicies();
+        session.flush();
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(POLICY_COUNT, statistics.getEntityInsertCount());
+    }
+
+    @Test
+    @Transactional
+    void testUpdatesAreBatched() {
+        List<Policy> policies = createPolicies();
+        session.flush();
+
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+
+        for (Policy policy : policies) {
+            policy.isEnabled = true;
+            policy.setMtimeToNow();
+        }
+        session.flush();
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(POLICY_COUNT, statistics.getEntityUpdateCount());
+    }
+
+    private List<Policy> createPolicies() {
+        List<Policy> policies = new ArrayList<>();
+        for (int i = 0; i < POLICY_COUNT; i++) {
+            Policy policy = new Policy();
+            policy.id = UUID.randomUUID();
+            policy.orgId = ORG_ID;
+            policy.name = "batched-" + i;
+            policy.conditions = "arch = \"x86_64\"";
+            policy.persist();
+            policies.add(policy);
+        }
+        return policies;
+    }
+}
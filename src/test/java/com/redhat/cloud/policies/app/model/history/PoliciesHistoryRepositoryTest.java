@@ -2,16 +2,26 @@ package com.redhat.cloud.policies.app.model.history;
 
 import com.redhat.cloud.policies.app.PoliciesHistoryTestHelper;
 import com.redhat.cloud.policies.app.TestLifecycleManager;
+import com.redhat.cloud.policies.app.model.engine.HistoryItem;
+import com.redhat.cloud.policies.app.model.pager.CountMode;
+import com.redhat.cloud.policies.app.model.pager.Cursor;
+import com.redhat.cloud.policies.app.model.pager.Page;
 import com.redhat.cloud.policies.app.model.pager.Pager;
 
+import db.migration.V30__policies_history_host_group_backfill;
+import io.agroal.api.AgroalDataSource;
 import io.quarkus.test.common.QuarkusTestResource;
 import io.quarkus.test.junit.QuarkusTest;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.api.BeforeAll;
+import org.flywaydb.core.api.migration.Context;
 
 import jakarta.inject.Inject;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.ArrayList;
 
@@ -21,7 +31,12 @@ import static com.redhat.cloud.policies.app.model.filter.Filter.Operator.NOT_EQU
 import static io.quarkus.panache.common.Sort.Direction.Ascending;
 import static io.quarkus.panache.common.Sort.Direction.Descending;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 @QuarkusTest
 @QuarkusTestResource(TestLifecycleManager.class)
@@ -52,6 +67,9 @@ class PoliciesHistoryRepositoryTest {
     @Inject
     PoliciesHistoryRepository repository;
 
+    @Inject
+    AgroalDataSource dataSource;
+
     private static List<PoliciesHistoryEntry> insertedEntries;
 
     @BeforeAll
@@ -217,6 +235,48 @@ class PoliciesHistoryRepositoryTest {
         assertEquals(GROUP_ID_1.toString(), entries.get(0).getHostGroups().getJsonObject(0).getString("id"));
     }
 
+    @Test
+    void testHostGroupsBackfill() throws Exception {
+        Pager pager = Pager.builder().build();
+        try (Connection connection = dataSource.getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement("DELETE FROM policies_history_host_group WHERE org_id = ?")) {
+                statement.setString(1, ORG_ID_3);
+                statement.executeUpdate();
+            }
+            assertEquals(0, repository.count(ORG_ID_3, List.of(GROUP_ID_1), POLICY_ID_3, pager));
+
+            Context context = mock(Context.class);
+            when(context.getConnection()).thenReturn(connection);
+            new V30__policies_history_host_group_backfill().migrate(context);
+        }
+
+        assertEquals(1, repository.count(ORG_ID_3, List.of(GROUP_ID_1), POLICY_ID_3, pager));
+        assertEquals(1, repository.count(ORG_ID_3, List.of(GROUP_ID_2), POLICY_ID_3, pager));
+    }
+
+    @Test
+    void testTemplatesAreReused() {
+        Pager pager = Pager.builder().filter("name", LIKE, "host").build();
+        repository.find(ORG_ID_3, List.of(GROUP_ID_1), POLICY_ID_3, pager);
+        int templates = repository.getTemplateCount();
+
+        // Neither the number of groups nor the filter values change the SQL
+        List<UUID> hostGroupIds = new ArrayList<UUID>();
+        for (int i = 0; i < 50; i++) {
+            hostGroupIds.add(UUID.randomUUID());
+            Pager otherValue = Pager.builder().filter("name", LIKE, "name-" + i).build();
+            repository.find(ORG_ID_3, hostGroupIds, POLICY_ID_3, otherValue);
+        }
+        assertEquals(templates, repository.getTemplateCount());
+    }
+
+    @Test
+    void testHostGroupsEmpty() {
+        Pager pager = Pager.builder().build();
+        assertEquals(0, repository.count(ORG_ID_3, List.of(), POLICY_ID_3, pager));
+        assertTrue(repository.find(ORG_ID_3, List.of(), POLICY_ID_3, pager).isEmpty());
+    }
+
     @Test
     void testostGroupsCombined() {
         Pager pager = Pager.builder().build();
@@ -239,4 +299,119 @@ class PoliciesHistoryRepositoryTest {
             }
         }
     }
+
+    @Test
+    void testSeekDescending() {
+        List<PoliciesHistoryEntry> seen = new ArrayList<>();
+        Cursor cursor = null;
+        do {
+            Pager pager = Pager.builder().itemsPerPage(1).keysetPaging(cursor).build();
+            Page<PoliciesHistoryEntry> page = repository.seek(ORG_ID_2, null, POLICY_ID_2, pager);
+            assertEquals(4, page.getTotalCount());
+            assertEquals(1, page.size());
+            seen.addAll(page);
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(4, seen.size());
+        assertEquals(Set.of(insertedEntries.get(2), insertedEntries.get(3), insertedEntries.get(4), insertedEntries.get(5)), Set.copyOf(seen));
+        assertEquals(insertedEntries.get(5), seen.get(0));
+        assertEquals(insertedEntries.get(4), seen.get(1));
+    }
+
+    @Test
+    void testSeekAscendingWithFilter() {
+        Pager pager = Pager.builder().itemsPerPage(2).addSort("ctime", Ascending).filter("name", LIKE, "host-name-2").keysetPaging(null).build();
+        Page<PoliciesHistoryEntry> page = repository.seek(ORG_ID_2, null, POLICY_ID_2, pager);
+        assertEquals(3, page.getTotalCount());
+        assertEquals(List.of(insertedEntries.get(3), insertedEntries.get(4)), page);
+
+        pager = Pager.builder().itemsPerPage(2).addSort("ctime", Ascending).filter("name", LIKE, "host-name-2").keysetPaging(page.getNextCursor()).build();
+        page = repository.seek(ORG_ID_2, null, POLICY_ID_2, pager);
+        assertEquals(List.of(insertedEntries.get(5)), page);
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void testItemsProjection() {
+        Pager pager = Pager.builder().filter("name", LIKE, "host-name-2").build();
+        assertEquals(toItems(repository.find(ORG_ID_2, null, POLICY_ID_2, pager)), repository.findItems(ORG_ID_2, null, POLICY_ID_2, pager));
+        assertEquals(toItems(repository.findPage(ORG_ID_3, List.of(GROUP_ID_1), POLICY_ID_3, pager)),
+                repository.findItemsPage(ORG_ID_3, List.of(GROUP_ID_1), POLICY_ID_3, pager));
+
+        // The cursor of the projection is the one of the entities
+        List<HistoryItem> seen = new ArrayList<>();
+        Cursor cursor = null;
+        do {
+            Pager seekPager = Pager.builder().itemsPerPage(1).keysetPaging(cursor).build();
+            Page<HistoryItem> page = repository.seekItems(ORG_ID_2, null, POLICY_ID_2, seekPager);
+            assertEquals(4, page.getTotalCount());
+            assertEquals(repository.seek(ORG_ID_2, null, POLICY_ID_2, seekPager).getNextCursor(), page.getNextCursor());
+            seen.addAll(page);
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(toItems(List.of(insertedEntries.get(5), insertedEntries.get(4))), seen.subList(0, 2));
+        assertEquals(4, seen.size());
+    }
+
+    private static List<HistoryItem> toItems(List<PoliciesHistoryEntry> entries) {
+        List<HistoryItem> items = new ArrayList<>();
+        for (PoliciesHistoryEntry entry : entries) {
+            items.add(new HistoryItem(entry.getCtime(), entry.getHostId(), entry.getHostName()));
+        }
+        return items;
+    }
+
+    @Test
+    void testSeekBadSort() {
+        Pager pager = Pager.builder().addSort("name", Ascending).keysetPaging(null).build();
+        assertThrows(IllegalArgumentException.class, () -> repository.seek(ORG_ID_2, null, POLICY_ID_2, pager));
+
+        Cursor cursor = new Cursor("ctime", Descending, "3", UUID.randomUUID());
+        Pager mismatch = Pager.builder().addSort("ctime", Ascending).keysetPaging(cursor).build();
+        assertThrows(IllegalArgumentException.class, () -> repository.seek(ORG_ID_2, null, POLICY_ID_2, mismatch));
+    }
+
+    @Test
+    void testCountUpTo() {
+        Pager pager = Pager.builder().build();
+        assertEquals(4, repository.countUpTo(ORG_ID_2, null, POLICY_ID_2, pager, 10));
+        assertEquals(2, repository.countUpTo(ORG_ID_2, null, POLICY_ID_2, pager, 2));
+
+        pager = Pager.builder().filter("name", LIKE, "host-name-2").build();
+        assertEquals(3, repository.countUpTo(ORG_ID_2, null, POLICY_ID_2, pager, 10));
+    }
+
+    @Test
+    void testFindPageWithoutCount() {
+        Pager pager = Pager.builder().itemsPerPage(3).addSort("ctime", Descending).countMode(CountMode.NONE).build();
+        Page<PoliciesHistoryEntry> page = repository.findPage(ORG_ID_2, null, POLICY_ID_2, pager);
+        assertEquals(Page.UNKNOWN_COUNT, page.getTotalCount());
+        assertEquals(List.of(insertedEntries.get(5), insertedEntries.get(4), insertedEntries.get(3)), page);
+        assertTrue(page.hasMore());
+
+        pager = Pager.builder().itemsPerPage(3).page(3).addSort("ctime", Descending).countMode(CountMode.NONE).build();
+        page = repository.findPage(ORG_ID_2, null, POLICY_ID_2, pager);
+        assertEquals(List.of(insertedEntries.get(2)), page);
+        assertFalse(page.hasMore());
+    }
+
+    @Test
+    void testFindPageWithEstimatedCount() {
+        Pager pager = Pager.builder().itemsPerPage(2).countMode(CountMode.ESTIMATE).build();
+        Page<PoliciesHistoryEntry> page = repository.findPage(ORG_ID_2, null, POLICY_ID_2, pager);
+        assertEquals(4, page.getTotalCount());
+        assertEquals(2, page.size());
+        assertFalse(page.isCountCapped());
+        assertTrue(page.hasMore());
+    }
+
+    @Test
+    void testSeekWithoutCount() {
+        Pager pager = Pager.builder().itemsPerPage(3).countMode(CountMode.NONE).keysetPaging(null).build();
+        Page<PoliciesHistoryEntry> page = repository.seek(ORG_ID_2, null, POLICY_ID_2, pager);
+        assertEquals(Page.UNKNOWN_COUNT, page.getTotalCount());
+        assertEquals(3, page.size());
+        assertTrue(page.hasMore());
+    }
 }
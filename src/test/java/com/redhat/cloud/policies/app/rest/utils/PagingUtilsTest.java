@@ -3,9 +3,12 @@ package com.redhat.cloud.policies.app.rest.utils;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
+import java.util.UUID;
 
 import com.redhat.cloud.policies.app.model.ColumnGetter;
 import com.redhat.cloud.policies.app.model.ColumnInfo;
+import com.redhat.cloud.policies.app.model.pager.CountMode;
+import com.redhat.cloud.policies.app.model.pager.Cursor;
 import com.redhat.cloud.policies.app.model.pager.Page;
 import com.redhat.cloud.policies.app.model.pager.Pager;
 import io.quarkus.panache.common.Sort;
@@ -16,6 +19,9 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.eq;
@@ -35,6 +41,8 @@ class PagingUtilsTest {
         when(columnGetter.get(eq("foobar"))).thenReturn(new ColumnInfo("foobar", "foobar", false, true));
         when(columnGetter.get(eq("is_enabled"))).thenReturn(new ColumnInfo("is_enabled", "isEnabled", true, true));
         when(columnGetter.get(eq("guy"))).thenReturn(new ColumnInfo("guy", "guy", true, true));
+        when(columnGetter.getByFieldName(eq("foo"))).thenReturn(new ColumnInfo("foo", "foo", true, true));
+        when(columnGetter.getByFieldName(eq("baz"))).thenReturn(new ColumnInfo("baz", "baz", true, false));
     }
 
     @Test
@@ -234,5 +242,136 @@ class PagingUtilsTest {
         assertEquals(Response.Status.NOT_FOUND.getStatusCode(), response.getStatus());
     }
 
+    @Test
+    void extractPagerEmptyCursor() throws URISyntaxException {
+        Pager pager = getPagerFromUriString("https://foo?cursor=&offset=12");
+        assertTrue(pager.isKeysetPaging());
+        assertNull(pager.getCursor());
+        assertEquals("mtime", pager.getSort().getColumns().get(0).getName());
+        assertEquals(Sort.Direction.Descending, pager.getSort().getColumns().get(0).getDirection());
+    }
+
+    @Test
+    void extractPagerCursor() throws URISyntaxException {
+        Cursor cursor = new Cursor("foo", Sort.Direction.Ascending, "a|b", UUID.randomUUID());
+        Pager pager = getPagerFromUriString("https://foo?cursor=" + cursor.encode());
+        assertTrue(pager.isKeysetPaging());
+        assertEquals(cursor, pager.getCursor());
+        // The cursor carries the sort it was created for
+        assertEquals(1, pager.getSort().getColumns().size());
+        assertEquals("foo", pager.getSort().getColumns().get(0).getName());
+        assertEquals(Sort.Direction.Ascending, pager.getSort().getColumns().get(0).getDirection());
+    }
+
+    @Test
+    void extractPagerCursorUnsortableColumn() throws URISyntaxException {
+        for (String column : new String[] {"baz", "unknown", "name DESC, conditions"}) {
+            Cursor cursor = new Cursor(column, Sort.Direction.Ascending, "a", UUID.randomUUID());
+            UriInfo info = new ResteasyUriInfo(new URI("https://foo?cursor=" + cursor.encode()));
+            assertThrows(IllegalArgumentException.class, () -> {
+                PagingUtils.extractPager(info, columnGetter);
+            }, column);
+        }
+    }
+
+    @Test
+    void extractPagerCursorFilters() throws URISyntaxException {
+        Pager pager = getPagerFromUriString("https://foo?cursor=&filter[foo]=a%25b&filter:op[foo]=like&limit=2");
+        assertEquals("&filter%5Bfoo%5D=a%25b&filter%3Aop%5Bfoo%5D=like", pager.getFilterParameters());
+
+        Cursor next = new Cursor("mtime", Sort.Direction.Descending, "1:0", UUID.randomUUID());
+        Page<String> page = new Page<>(List.of("a", "b"), pager, 3, next);
+        PagingUtils.PagedResponse<String> response = new PagingUtils.PagedResponse<>(page);
+        assertEquals("/api/policies/v1.0/policies?limit=2&filter%5Bfoo%5D=a%25b&filter%3Aop%5Bfoo%5D=like&cursor=",
+                response.links.get("first"));
+        assertEquals("/api/policies/v1.0/policies?limit=2&filter%5Bfoo%5D=a%25b&filter%3Aop%5Bfoo%5D=like&cursor=" + next.encode(),
+                response.links.get("next"));
+    }
+
+    @Test
+    void extractPagerWithoutCursor() throws URISyntaxException {
+        Pager pager = getPagerFromUriString("https://foo?offset=12");
+        assertFalse(pager.isKeysetPaging());
+        assertNull(pager.getCursor());
+    }
+
+    @Test
+    void extractPagerInvalidCursor() throws URISyntaxException {
+        UriInfo info = new ResteasyUriInfo(new URI("https://foo?cursor=bar"));
+        assertThrows(IllegalArgumentException.class, () -> {
+            PagingUtils.extractPager(info, columnGetter);
+        });
+    }
+
+    @Test
+    public void responseBuilderKeysetLinks() {
+        Cursor next = new Cursor("name", Sort.Direction.Descending, "Hello", UUID.randomUUID());
+        Page<String> page = new Page<>(
+                List.of("Hello", "World"),
+                Pager.builder().itemsPerPage(2).keysetPaging(null).build(),
+                54,
+                next
+        );
+        PagingUtils.PagedResponse<String> response = new PagingUtils.PagedResponse<>(page);
+
+        assertEquals(54, response.meta.count);
+        assertEquals(2, response.links.size());
+        assertEquals("/api/policies/v1.0/policies?limit=2&cursor=", response.links.get("first"));
+        assertEquals("/api/policies/v1.0/policies?limit=2&cursor=" + next.encode(), response.links.get("next"));
+    }
+
+    @Test
+    void extractPagerCountMode() throws URISyntaxException {
+        assertEquals(CountMode.EXACT, getPagerFromUriString("https://foo").getCountMode());
+        assertEquals(CountMode.ESTIMATE, getPagerFromUriString("https://foo?count=estimate").getCountMode());
+        assertEquals(CountMode.NONE, getPagerFromUriString("https://foo?count=NONE").getCountMode());
+
+        UriInfo info = new ResteasyUriInfo(new URI("https://foo?count=approximately"));
+        assertThrows(IllegalArgumentException.class, () -> {
+            PagingUtils.extractPager(info, columnGetter);
+        });
+    }
+
+    @Test
+    public void responseBuilderCappedCount() {
+        Pager pager = Pager.builder().itemsPerPage(10).page(20).countMode(CountMode.ESTIMATE).build();
+        Page<String> page = new Page<>(
+                List.of("Hello", "World"),
+                pager,
+                CountMode.ESTIMATE_LIMIT,
+                CountMode.ESTIMATE,
+                null,
+                Page.hasMore(pager, CountMode.ESTIMATE_LIMIT, CountMode.ESTIMATE)
+        );
+        Response response = PagingUtils.responseBuilder(page).build();
+        assertEquals(CountMode.ESTIMATE_LIMIT + "+", response.getHeaderString("TotalCount"));
+
+        PagingUtils.PagedResponse<String> pagedResponse = new PagingUtils.PagedResponse<>(page);
+        assertEquals("estimate", pagedResponse.meta.countMode);
+        assertTrue(pagedResponse.meta.hasMore);
+        assertNull(pagedResponse.links.get("last"));
+        assertEquals("/api/policies/v1.0/policies?limit=10&offset=30&count=estimate", pagedResponse.links.get("next"));
+    }
 
+    @Test
+    public void responseBuilderWithoutCount() {
+        Page<String> page = new Page<>(
+                List.of("Hello", "World"),
+                Pager.builder().itemsPerPage(2).page(2).countMode(CountMode.NONE).build(),
+                Page.UNKNOWN_COUNT,
+                CountMode.NONE,
+                null,
+                false
+        );
+        Response response = PagingUtils.responseBuilder(page).build();
+        assertNull(response.getHeaderString("TotalCount"));
+
+        PagingUtils.PagedResponse<String> pagedResponse = new PagingUtils.PagedResponse<>(page);
+        assertNull(pagedResponse.meta.count);
+        assertEquals("none", pagedResponse.meta.countMode);
+        assertFalse(pagedResponse.meta.hasMore);
+        assertEquals(2, pagedResponse.links.size());
+        assertEquals("/api/policies/v1.0/policies?limit=2&offset=0&count=none", pagedResponse.links.get("first"));
+        assertEquals("/api/policies/v1.0/policies?limit=2&offset=0&count=none", pagedResponse.links.get("prev"));
+    }
 }